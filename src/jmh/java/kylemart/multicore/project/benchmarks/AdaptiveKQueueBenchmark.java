@@ -0,0 +1,29 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.AdaptiveKQueue;
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Runs the {@link QueueBenchmark} workloads against an {@link AdaptiveKQueue} whose bounds span the k values of
+ * {@link KQueueBenchmark}, so that across the thread-count sweep it can be compared with the best fixed k.
+ */
+public class AdaptiveKQueueBenchmark extends QueueBenchmark {
+
+    @Param({"16"})
+    public int minK;
+
+    @Param({"64"})
+    public int maxK;
+
+    /**
+     * The number of segments; 0 sizes the ring so that it holds {@link #capacity} elements even at the smallest k.
+     */
+    @Param({"0"})
+    public int segmentCount;
+
+    @Override
+    protected ConcurrentQueue<Integer> createQueue() {
+        return new AdaptiveKQueue<>(minK, maxK, segmentCount > 0 ? segmentCount : capacity / minK + 1);
+    }
+}
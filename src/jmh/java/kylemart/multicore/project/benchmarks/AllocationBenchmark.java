@@ -0,0 +1,75 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.PaddedKQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures enqueue and dequeue on their own, in a steady state, so that the GC profiler can attribute allocations to
+ * each operation. Run through {@link AllocationCheck}, which fails if either operation allocates.
+ *
+ * <p>
+ * The {@code enqueue} benchmark empties the queue whenever it fills up, and the {@code dequeue} benchmark refills it
+ * whenever it runs empty, so each also exercises the other operation now and then.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AllocationBenchmark {
+
+    static final int capacity = 4096;
+
+    static final Integer element = 1;
+
+    @Param({"KQueue", "PaddedKQueue"})
+    public String implementation;
+
+    @Param({"16", "64"})
+    public int k;
+
+    ConcurrentQueue<Integer> queue;
+
+    @Setup
+    public void setUp() {
+        switch (implementation) {
+            case "KQueue":
+                queue = new KQueue<>(k, capacity / k);
+                break;
+            case "PaddedKQueue":
+                queue = new PaddedKQueue<>(k, capacity / k);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    public boolean enqueue() {
+        if (queue.enqueue(element)) {
+            return true;
+        }
+        while (queue.dequeue() != null) {
+            // Empty the queue so that enqueueing can carry on.
+        }
+        return false;
+    }
+
+    @Benchmark
+    public Integer dequeue() {
+        Integer value = queue.dequeue();
+        if (value != null) {
+            return value;
+        }
+        while (queue.enqueue(element)) {
+            // Fill the queue so that dequeueing can carry on.
+        }
+        return null;
+    }
+}
@@ -0,0 +1,74 @@
+package kylemart.multicore.project.benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Runs {@link AllocationBenchmark} with the GC profiler and fails if any benchmark allocates, or if the profiler
+ * reports no allocation rate at all.
+ *
+ * <p>
+ * Accepts the regular JMH command line options. The profiler's normalized allocation rate includes a small amount of
+ * noise from the harness itself, well below a byte per operation, while the smallest possible object takes 16 bytes;
+ * a benchmark therefore counts as allocating once its rate reaches {@link #threshold} bytes per operation.
+ * </p>
+ */
+public class AllocationCheck {
+
+    private static final double threshold = 1.0;
+
+    private static final String allocationRate = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine)
+                .include(AllocationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class);
+
+        boolean allocates = false;
+        int measured = 0;
+        for (RunResult result : new Runner(options.build()).run()) {
+            // JMH declares the secondary results with the raw Result type.
+            for (Map.Entry<String, ?> secondary : result.getSecondaryResults().entrySet()) {
+                if (!secondary.getKey().endsWith(allocationRate)) {
+                    continue;
+                }
+                measured++;
+                double bytesPerOperation = ((Result<?>) secondary.getValue()).getScore();
+                if (bytesPerOperation >= threshold) {
+                    allocates = true;
+                    System.err.printf("%s %s allocates %.1f bytes/op%n",
+                            result.getParams().getBenchmark(), describe(result.getParams()), bytesPerOperation);
+                }
+            }
+        }
+
+        if (measured == 0) {
+            // Without the metric, nothing was checked: the profiler may be unavailable, or the options matched nothing.
+            System.err.println("No " + allocationRate + " results were reported");
+            System.exit(1);
+        }
+        if (allocates) {
+            System.exit(1);
+        }
+    }
+
+    private static String describe(BenchmarkParams params) {
+        StringJoiner description = new StringJoiner(", ", "(", ")");
+        for (String key : params.getParamsKeys()) {
+            description.add(key + "=" + params.getParam(key));
+        }
+        return description.toString();
+    }
+}
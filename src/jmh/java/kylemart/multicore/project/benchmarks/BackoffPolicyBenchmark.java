@@ -0,0 +1,82 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.BackoffPolicy;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.QueueMetrics;
+import kylemart.multicore.project.queues.ScanPolicy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link BackoffPolicy backoff policies} of {@link KQueue} where contention is highest: many threads on
+ * a queue with a small k, so that they keep competing for the same few slots. Each benchmark reports its throughput
+ * and the distribution of the time a single operation takes, which shows what backing off costs the operations that
+ * have to wait. Run it with more threads than {@link BenchmarkRunner} uses by default, e.g. {@code -t 16}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@Threads(16)
+@State(Scope.Benchmark)
+public class BackoffPolicyBenchmark {
+
+    static final int capacity = 500_000;
+
+    static final Integer element = 1;
+
+    @Param({"4", "16"})
+    public int k;
+
+    @Param
+    public BackoffPolicy backoffPolicy;
+
+    @Param({"250000"})
+    public int prefill;
+
+    KQueue<Integer> queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = new KQueue<>(k, capacity / k + 1, ScanPolicy.LEFT_TO_RIGHT, backoffPolicy);
+        for (int count = 0; count < prefill; count++) {
+            queue.enqueue(element);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printMetrics() {
+        if (QueueMetrics.ENABLED) {
+            System.out.println("metrics: " + queue.metrics());
+        }
+    }
+
+    @Benchmark
+    public void mixed(OperationMix mix, Blackhole blackhole) {
+        switch (mix.next()) {
+            case ENQ:
+                blackhole.consume(queue.enqueue(element));
+                break;
+            case DEQ:
+                blackhole.consume(queue.dequeue());
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public boolean enqueue() {
+        return queue.enqueue(element);
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public Integer dequeue() {
+        return queue.dequeue();
+    }
+}
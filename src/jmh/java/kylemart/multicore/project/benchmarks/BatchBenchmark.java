@@ -0,0 +1,148 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.StmQueue;
+import kylemart.multicore.project.queues.StmRingQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares moving elements one at a time against {@link ConcurrentQueue#enqueueAll} and
+ * {@link ConcurrentQueue#drainTo}. The {@link Elements} counters report the number of elements moved, so the
+ * per-element cost can be compared across batch sizes. The transactional queues run a whole batch in one
+ * transaction, so for them the batch size is also the number of elements a transaction's cost is spread over.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    static final int capacity = 500_000;
+
+    static final Integer element = 1;
+
+    @Param({"KQueue", "StmQueue", "StmRingQueue"})
+    public String implementation;
+
+    /**
+     * The k of a {@link KQueue}; ignored by the other queues.
+     */
+    @Param({"16", "32", "64"})
+    public int k;
+
+    @Param({"1", "16", "64"})
+    public int batchSize;
+
+    @Param({"true", "false"})
+    public boolean bulk;
+
+    ConcurrentQueue<Integer> queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = createQueue();
+    }
+
+    private ConcurrentQueue<Integer> createQueue() {
+        switch (implementation) {
+            case "KQueue":
+                return new KQueue<>(k, capacity / k + 1);
+            case "StmQueue":
+                return new StmQueue<>(capacity);
+            case "StmRingQueue":
+                return new StmRingQueue<>(capacity);
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    public void mixed(OperationMix mix, Batch batch, Elements elements) {
+        switch (mix.next()) {
+            case ENQ:
+                elements.enqueued += enqueue(batch.source);
+                break;
+            case DEQ:
+                elements.dequeued += dequeue(batch.sink);
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public void enqueue(Batch batch, Elements elements) {
+        elements.enqueued += enqueue(batch.source);
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public void dequeue(Batch batch, Elements elements) {
+        elements.dequeued += dequeue(batch.sink);
+    }
+
+    private int enqueue(Integer[] values) {
+        if (bulk) {
+            return queue.enqueueAll(values, 0, values.length);
+        }
+        int enqueued = 0;
+        while (enqueued < values.length && queue.enqueue(values[enqueued])) {
+            enqueued++;
+        }
+        return enqueued;
+    }
+
+    private int dequeue(Integer[] values) {
+        if (bulk) {
+            return queue.drainTo(values, values.length);
+        }
+        int dequeued = 0;
+        while (dequeued < values.length && (values[dequeued] = queue.dequeue()) != null) {
+            dequeued++;
+        }
+        return dequeued;
+    }
+
+    /**
+     * The per-thread buffers that elements are enqueued from and dequeued into.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+
+        Integer[] source;
+
+        Integer[] sink;
+
+        @Setup
+        public void setUp(BatchBenchmark benchmark) {
+            source = new Integer[benchmark.batchSize];
+            Arrays.fill(source, element);
+            sink = new Integer[benchmark.batchSize];
+        }
+    }
+
+    /**
+     * The number of elements each thread moved through the queue.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Elements {
+
+        public long enqueued;
+
+        public long dequeued;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            enqueued = 0;
+            dequeued = 0;
+        }
+    }
+}
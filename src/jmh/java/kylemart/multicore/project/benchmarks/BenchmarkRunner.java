@@ -0,0 +1,44 @@
+package kylemart.multicore.project.benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the JMH benchmarks once per thread count and writes all results to a single file.
+ *
+ * <p>
+ * Accepts the regular JMH command line options. Unless {@code -t} is given, every benchmark is run with each of
+ * {@link #threadCounts} threads. Results are written as JSON to {@code jmh-result.json} unless {@code -rf} or
+ * {@code -rff} say otherwise.
+ * </p>
+ */
+public class BenchmarkRunner {
+
+    private static final int[] threadCounts = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        List<RunResult> results = new ArrayList<>();
+        if (commandLine.getThreads().hasValue()) {
+            results.addAll(new Runner(commandLine).run());
+        } else {
+            for (int threadCount : threadCounts) {
+                results.addAll(new Runner(new OptionsBuilder().parent(commandLine).threads(threadCount).build()).run());
+            }
+        }
+
+        ResultFormatType format = commandLine.getResultFormat().orElse(ResultFormatType.JSON);
+        String file = commandLine.getResult().orElse("jmh-result." + format.name().toLowerCase());
+        ResultFormatFactory.getInstance(format, file).writeOut(results);
+    }
+}
@@ -0,0 +1,32 @@
+package kylemart.multicore.project.benchmarks;
+
+/**
+ * The ratio of enqueue to dequeue operations performed by each benchmark thread.
+ */
+public enum DistributionFrequency {
+
+    ENQ_50_DEQ_50(50, 50),
+    ENQ_25_DEQ_75(25, 75),
+    ENQ_75_DEQ_25(75, 25);
+
+    final int enqueueCount;
+    final int dequeueCount;
+
+    DistributionFrequency(int enqueueCount, int dequeueCount) {
+        this.enqueueCount = enqueueCount;
+        this.dequeueCount = dequeueCount;
+    }
+
+    /**
+     * @return a table of 100 operations in which each operation appears as often as this frequency prescribes
+     */
+    Operation[] operations() {
+        Operation[] operations = new Operation[enqueueCount + dequeueCount];
+        for (int index = 0; index < operations.length; index++) {
+            operations[index] = index < dequeueCount ? Operation.DEQ : Operation.ENQ;
+        }
+        return operations;
+    }
+
+    enum Operation { ENQ, DEQ }
+}
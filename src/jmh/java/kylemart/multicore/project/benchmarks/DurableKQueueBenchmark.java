@@ -0,0 +1,111 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.Codec;
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.DurableKQueue;
+import kylemart.multicore.project.queues.KQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares a {@link DurableKQueue} against the in-memory {@link KQueue} it is built on, across force intervals, with
+ * the {@link QueueBenchmark} workloads. Each iteration journals into a new temporary directory, deleted afterwards.
+ * A {@code forceEvery} of 0 never forces, which measures the cost of journaling alone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DurableKQueueBenchmark {
+
+    static final int capacity = 500_000;
+
+    static final Integer element = 1;
+
+    @Param({"KQueue", "DurableKQueue"})
+    public String implementation;
+
+    @Param({"16"})
+    public int k;
+
+    /**
+     * The force interval of a {@link DurableKQueue}; ignored by {@link KQueue}.
+     */
+    @Param({"0", "64", "1024"})
+    public int forceEvery;
+
+    @Param({"0", "250000"})
+    public int prefill;
+
+    ConcurrentQueue<Integer> queue;
+
+    Path directory;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        switch (implementation) {
+            case "KQueue":
+                queue = new KQueue<>(k, capacity / k + 1);
+                break;
+            case "DurableKQueue":
+                directory = Files.createTempDirectory("journal");
+                queue = new DurableKQueue<>(directory, k, capacity / k + 1, Codec.integers(),
+                        DurableKQueue.DEFAULT_FILE_SIZE, forceEvery);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+        for (int count = 0; count < prefill; count++) {
+            queue.enqueue(element);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (directory == null) {
+            return;
+        }
+        ((DurableKQueue<Integer>) queue).close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+        directory = null;
+    }
+
+    @Benchmark
+    public void mixed(OperationMix mix, Blackhole blackhole) {
+        switch (mix.next()) {
+            case ENQ:
+                blackhole.consume(queue.enqueue(element));
+                break;
+            case DEQ:
+                blackhole.consume(queue.dequeue());
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public boolean enqueue() {
+        return queue.enqueue(element);
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public Integer dequeue() {
+        return queue.dequeue();
+    }
+}
@@ -0,0 +1,102 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.KQueueExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares a {@link KQueueExecutor} against a {@link ThreadPoolExecutor} with a {@link LinkedBlockingQueue} or an
+ * {@link ArrayBlockingQueue} of the same capacity, with the same number of workers, on tasks that do next to nothing.
+ * Every executor runs tasks in the submitting thread once its queue is full.
+ *
+ * <p>
+ * {@code throughput} has every benchmark thread submit {@link #tasks} tasks and wait until as many tasks have run as
+ * were submitted by then, so a score is in tasks run. {@code submit} measures how long it takes to submit a single
+ * task.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    static final int capacity = 65_536;
+
+    static final int tasks = 1_000;
+
+    @Param({"KQueueExecutor", "LinkedBlockingQueue", "ArrayBlockingQueue"})
+    public String implementation;
+
+    @Param({"4"})
+    public int workers;
+
+    /**
+     * The k of a {@link KQueueExecutor}; ignored by the other executors.
+     */
+    @Param({"16"})
+    public int k;
+
+    ExecutorService executor;
+
+    final AtomicLong submitted = new AtomicLong();
+
+    final LongAdder completed = new LongAdder();
+
+    final Runnable task = completed::increment;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        submitted.set(0);
+        completed.reset();
+        switch (implementation) {
+            case "KQueueExecutor":
+                executor = new KQueueExecutor(workers, k, capacity / k + 1);
+                break;
+            case "LinkedBlockingQueue":
+                executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(capacity), new ThreadPoolExecutor.CallerRunsPolicy());
+                break;
+            case "ArrayBlockingQueue":
+                executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(capacity), new ThreadPoolExecutor.CallerRunsPolicy());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(tasks)
+    public void throughput() {
+        for (int count = 0; count < tasks; count++) {
+            executor.execute(task);
+        }
+        long target = submitted.addAndGet(tasks);
+        while (completed.sum() < target) {
+            Thread.yield();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void submit() {
+        executor.execute(task);
+    }
+}
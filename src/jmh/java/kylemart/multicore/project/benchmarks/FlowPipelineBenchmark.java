@@ -0,0 +1,138 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.QueueProcessor;
+import kylemart.multicore.project.queues.QueuePublisher;
+import kylemart.multicore.project.queues.StmQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the end-to-end throughput of a pipeline of {@link QueuePublisher} and {@link QueueProcessor} stages: a
+ * source publisher, {@link #stages} processors that each map their elements, and a sink subscriber that requests
+ * {@link #batchSize} elements at a time. Every benchmark thread offers {@link #elements} elements to the source and
+ * then waits until the sink has received as many elements as were offered by then, so a score is in elements that
+ * made it through the whole pipeline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class FlowPipelineBenchmark {
+
+    static final int elements = 10_000;
+
+    @Param({"KQueue", "StmQueue"})
+    public String implementation;
+
+    @Param({"2", "4"})
+    public int stages;
+
+    @Param({"16", "256"})
+    public int batchSize;
+
+    @Param({"16"})
+    public int k;
+
+    /**
+     * The number of segments of a {@link KQueue}, and the capacity of a {@link StmQueue} in units of k.
+     */
+    @Param({"64"})
+    public int segmentCount;
+
+    ForkJoinPool executor;
+
+    QueuePublisher<Integer> source;
+
+    final AtomicLong offered = new AtomicLong();
+
+    final AtomicLong received = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        executor = new ForkJoinPool();
+        offered.set(0);
+        received.set(0);
+        source = new QueuePublisher<>(createQueue(), executor, batchSize);
+        Flow.Publisher<Integer> last = source;
+        for (int stage = 0; stage < stages; stage++) {
+            QueueProcessor<Integer, Integer> processor = new QueueProcessor<>(createQueue(), executor, batchSize,
+                    k * (segmentCount - 1), value -> value + 1);
+            last.subscribe(processor);
+            last = processor;
+        }
+        last.subscribe(new Sink());
+    }
+
+    private ConcurrentQueue<Integer> createQueue() {
+        switch (implementation) {
+            case "KQueue":
+                return new KQueue<>(k, segmentCount);
+            case "StmQueue":
+                return new StmQueue<>(k * segmentCount);
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        source.close();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(elements)
+    public void pipeline() {
+        for (int count = 0; count < elements; count++) {
+            while (!source.offer(count)) {
+                Thread.yield();
+            }
+        }
+        long target = offered.addAndGet(elements);
+        while (received.get() < target) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Counts the elements that made it through the pipeline.
+     */
+    private class Sink implements Flow.Subscriber<Integer> {
+
+        private Flow.Subscription subscription;
+
+        private int outstanding;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            outstanding = batchSize;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            received.incrementAndGet();
+            if (--outstanding == 0) {
+                outstanding = batchSize;
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
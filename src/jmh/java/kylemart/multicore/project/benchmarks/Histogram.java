@@ -0,0 +1,136 @@
+package kylemart.multicore.project.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative {@code long} values with a bounded relative error, in the style of HdrHistogram.
+ *
+ * <p>
+ * Values below 128 are counted exactly. Larger values are counted in buckets that split every power of two into 64
+ * equal parts, so a percentile is off by less than 1/64 of its value. Recording never allocates, and the histogram
+ * covers the whole range of {@code long} in fewer than 4000 buckets. Not thread-safe; give every thread a histogram of
+ * its own and {@link #add} them up.
+ * </p>
+ */
+final class Histogram {
+
+    /**
+     * The base-2 logarithm of the number of buckets each power of two is split into.
+     */
+    private static final int subBucketBits = 6;
+
+    private static final int subBucketCount = 1 << subBucketBits;
+
+    /**
+     * Values below this are counted exactly.
+     */
+    private static final int exactLimit = subBucketCount << 1;
+
+    private final long[] counts = new long[exactLimit + (Long.SIZE - subBucketBits - 2) * subBucketCount];
+
+    private long count;
+
+    private long sum;
+
+    private long max;
+
+    /**
+     * Counts a value.
+     *
+     * @param value a non-negative value
+     */
+    void record(long value) {
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values counted by another histogram to this one.
+     *
+     * @param other the histogram to add
+     */
+    void add(Histogram other) {
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Forgets every value counted so far.
+     */
+    void reset() {
+        Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @return the number of values counted
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * @return the exact mean of the values counted; 0 if there are none
+     */
+    double mean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * @return the exact largest value counted; 0 if there are none
+     */
+    long max() {
+        return max;
+    }
+
+    /**
+     * @param percentile a percentile between 0 and 100
+     * @return the highest value of the bucket that holds the value at the percentile, but no more than
+     * {@link #max()}; 0 if no values were counted
+     */
+    long percentile(double percentile) {
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= Math.max(rank, 1)) {
+                return Math.min(highestValue(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @param value a non-negative value
+     * @return the bucket the value is counted in
+     */
+    private static int bucket(long value) {
+        if (value < exactLimit) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - subBucketBits - 1;
+        int subBucket = (int) (value >>> shift) - subBucketCount;
+        return exactLimit + (shift - 1) * subBucketCount + subBucket;
+    }
+
+    /**
+     * @param bucket a bucket
+     * @return the highest value counted in the bucket
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < exactLimit) {
+            return bucket;
+        }
+        int shift = (bucket - exactLimit) / subBucketCount + 1;
+        long subBucket = (bucket - exactLimit) % subBucketCount + subBucketCount;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
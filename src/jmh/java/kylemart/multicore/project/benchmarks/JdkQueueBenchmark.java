@@ -0,0 +1,53 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Baselines from {@code java.util.concurrent}, measured through the same {@link ConcurrentQueue} interface.
+ */
+public class JdkQueueBenchmark extends QueueBenchmark {
+
+    @Param({"ConcurrentLinkedQueue", "ArrayBlockingQueue"})
+    public String implementation;
+
+    @Override
+    protected ConcurrentQueue<Integer> createQueue() {
+        switch (implementation) {
+            case "ConcurrentLinkedQueue":
+                return new JdkQueue<>(new ConcurrentLinkedQueue<>());
+            case "ArrayBlockingQueue":
+                return new JdkQueue<>(new ArrayBlockingQueue<>(capacity));
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    /**
+     * Adapts a {@link Queue} to the {@link ConcurrentQueue} interface.
+     *
+     * @param <E> the type of elements held in this queue
+     */
+    static class JdkQueue<E> implements ConcurrentQueue<E> {
+
+        private final Queue<E> queue;
+
+        JdkQueue(Queue<E> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean enqueue(E value) {
+            return queue.offer(value);
+        }
+
+        @Override
+        public E dequeue() {
+            return queue.poll();
+        }
+    }
+}
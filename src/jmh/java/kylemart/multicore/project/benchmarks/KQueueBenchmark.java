@@ -0,0 +1,28 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.QueueMetrics;
+import org.openjdk.jmh.annotations.Param;
+
+public class KQueueBenchmark extends QueueBenchmark {
+
+    @Param({"16", "32", "64"})
+    public int k;
+
+    /**
+     * The number of segments; 0 sizes the ring so that it holds {@link #capacity} elements.
+     */
+    @Param({"0"})
+    public int segmentCount;
+
+    @Override
+    protected ConcurrentQueue<Integer> createQueue() {
+        return new KQueue<>(k, segmentCount > 0 ? segmentCount : capacity / k + 1);
+    }
+
+    @Override
+    protected QueueMetrics metrics() {
+        return ((KQueue<Integer>) queue).metrics();
+    }
+}
@@ -0,0 +1,366 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.StmKQueue;
+import kylemart.multicore.project.queues.StmQueue;
+import kylemart.multicore.project.queues.StmRingQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures the latency of individual enqueue and dequeue calls at a fixed rate of operations, and writes percentile
+ * tables to a CSV file.
+ *
+ * <p>
+ * JMH measures how many operations a queue manages when threads call it as fast as they can; this harness instead
+ * has every thread call the queue on a fixed schedule, as the producers and consumers of a service would, and
+ * records how long each call took. A call that is held up delays the calls scheduled after it, and a harness that
+ * times each call from when it actually started would not count that delay: the slow call is recorded once, and the
+ * calls it held up look fast. This is <em>coordinated omission</em>. The latency recorded here is therefore the time
+ * from when a call was <em>scheduled</em> to start until it returned. The time from when it actually started, the
+ * service time, is recorded next to it; where the two differ, the queue could not keep up with the rate.
+ * </p>
+ *
+ * <p>
+ * Arguments are {@code name=value} pairs, lists are comma-separated, and every combination of the listed values is
+ * run:
+ * </p>
+ * <ul>
+ * <li>{@code queues}: the queues to measure, from {@link #createQueue}; default {@code KQueue,StmQueue}</li>
+ * <li>{@code workloads}: {@link Workload}s; default all</li>
+ * <li>{@code arrivals}: {@link Arrivals}; default all</li>
+ * <li>{@code distributions}: the {@link DistributionFrequency} of the {@link Workload#MIXED} workload; default
+ * {@code ENQ_50_DEQ_50}</li>
+ * <li>{@code threads}: thread counts; default {@code 1,2,4,8}</li>
+ * <li>{@code rate}: operations per second of all threads together; default {@code 1000000}</li>
+ * <li>{@code burst}: the number of operations scheduled at once by {@link Arrivals#BURSTY}; default {@code 100}</li>
+ * <li>{@code prefill}: elements enqueued before every run; default {@code 0,250000}</li>
+ * <li>{@code k}: the k of the k-FIFO queues; default {@code 16}</li>
+ * <li>{@code warmup}, {@code duration}: seconds spent before and while recording; default {@code 5} and
+ * {@code 10}</li>
+ * <li>{@code csv}: the file the rows are appended to; default {@code latency.csv}</li>
+ * </ul>
+ */
+public class LatencyHarness {
+
+    static final int capacity = 500_000;
+
+    static final Integer element = 1;
+
+    private static final double[] percentiles = {50, 90, 99, 99.9, 99.99};
+
+    /**
+     * Waits for the scheduled start of a call by parking if it is further away than this, by spinning otherwise.
+     */
+    private static final long parkThresholdNanos = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * How the threads share the work.
+     */
+    enum Workload {
+        /**
+         * Every thread randomly enqueues or dequeues, as prescribed by a {@link DistributionFrequency}.
+         */
+        MIXED,
+        /**
+         * Every other thread only enqueues, starting with the first; the others only dequeue.
+         */
+        SPLIT
+    }
+
+    /**
+     * When the calls of a thread are scheduled.
+     */
+    enum Arrivals {
+        /**
+         * At even intervals.
+         */
+        STEADY,
+        /**
+         * In bursts of {@code burst} calls, all scheduled at the same time, at the same average rate as
+         * {@link #STEADY}. The calls of a burst queue up behind one another.
+         */
+        BURSTY
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        String[] queues = options.getOrDefault("queues", "KQueue,StmQueue").split(",");
+        String[] workloads = options.getOrDefault("workloads", "MIXED,SPLIT").split(",");
+        String[] arrivals = options.getOrDefault("arrivals", "STEADY,BURSTY").split(",");
+        String[] distributions = options.getOrDefault("distributions", "ENQ_50_DEQ_50").split(",");
+        int[] threadCounts = ints(options.getOrDefault("threads", "1,2,4,8"));
+        int[] prefills = ints(options.getOrDefault("prefill", "0,250000"));
+        long rate = Long.parseLong(options.getOrDefault("rate", "1000000"));
+        int burst = Integer.parseInt(options.getOrDefault("burst", "100"));
+        int k = Integer.parseInt(options.getOrDefault("k", "16"));
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warmup", "5")));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration", "10")));
+        Path csv = Paths.get(options.getOrDefault("csv", "latency.csv"));
+
+        for (String queue : queues) {
+            for (String workload : workloads) {
+                // The distribution only matters to the mixed workload.
+                String[] runDistributions = Workload.valueOf(workload) == Workload.MIXED ?
+                        distributions : new String[]{"-"};
+                for (String distribution : runDistributions) {
+                    for (String arrival : arrivals) {
+                        for (int threadCount : threadCounts) {
+                            for (int prefill : prefills) {
+                                Run run = new Run(queue, Workload.valueOf(workload), distribution,
+                                        Arrivals.valueOf(arrival), threadCount, rate, burst, prefill, k);
+                                run.execute(warmupNanos, durationNanos);
+                                run.report(csv);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name the name of a queue: {@code KQueue}, {@code StmQueue}, {@code StmRingQueue}, {@code StmKQueue},
+     *             {@code ConcurrentLinkedQueue} or {@code ArrayBlockingQueue}
+     * @param k    the k of the k-FIFO queues
+     * @return a new, empty queue able to hold at least {@link #capacity} elements
+     */
+    static ConcurrentQueue<Integer> createQueue(String name, int k) {
+        switch (name) {
+            case "KQueue":
+                return new KQueue<>(k, capacity / k + 1);
+            case "StmQueue":
+                return new StmQueue<>(capacity);
+            case "StmRingQueue":
+                return new StmRingQueue<>(capacity);
+            case "StmKQueue":
+                return new StmKQueue<>(k, capacity / k + 1);
+            case "ConcurrentLinkedQueue":
+                return new JdkQueueBenchmark.JdkQueue<>(new ConcurrentLinkedQueue<>());
+            case "ArrayBlockingQueue":
+                return new JdkQueueBenchmark.JdkQueue<>(new ArrayBlockingQueue<>(capacity));
+            default:
+                throw new IllegalArgumentException("Unknown queue: " + name);
+        }
+    }
+
+    private static int[] ints(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * One combination of parameters.
+     */
+    private static final class Run {
+
+        final String queueName;
+        final Workload workload;
+        final String distribution;
+        final Arrivals arrivals;
+        final int threadCount;
+        final long rate;
+        final int burst;
+        final int prefill;
+        final int k;
+
+        /**
+         * The histograms of every thread, added up, by operation: latency, then service time.
+         */
+        final Histogram[] enqueue = {new Histogram(), new Histogram()};
+        final Histogram[] dequeue = {new Histogram(), new Histogram()};
+
+        Run(String queueName, Workload workload, String distribution, Arrivals arrivals, int threadCount, long rate,
+            int burst, int prefill, int k) {
+            this.queueName = queueName;
+            this.workload = workload;
+            this.distribution = distribution;
+            this.arrivals = arrivals;
+            this.threadCount = threadCount;
+            this.rate = rate;
+            this.burst = burst;
+            this.prefill = prefill;
+            this.k = k;
+        }
+
+        void execute(long warmupNanos, long durationNanos) throws InterruptedException {
+            ConcurrentQueue<Integer> queue = createQueue(queueName, k);
+            for (int count = 0; count < prefill; count++) {
+                queue.enqueue(element);
+            }
+
+            long intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) * threadCount / rate);
+            CyclicBarrier start = new CyclicBarrier(threadCount);
+            List<Thread> threads = new ArrayList<>();
+            for (int index = 0; index < threadCount; index++) {
+                DistributionFrequency.Operation[] operations = operations(index);
+                // Spreads the schedules of the threads over the interval, rather than having them all call at once.
+                long phaseNanos = intervalNanos * index / threadCount;
+                Thread thread = new Thread(() -> {
+                    Recorder recorder = new Recorder();
+                    try {
+                        start.await();
+                    } catch (Exception exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                    long startedAt = System.nanoTime() + phaseNanos;
+                    long measuringFrom = startedAt + warmupNanos;
+                    long endAt = measuringFrom + durationNanos;
+                    SplittableRandom random = new SplittableRandom();
+                    int burstSize = arrivals == Arrivals.BURSTY ? burst : 1;
+
+                    for (long call = 0; ; call++) {
+                        long scheduledAt = startedAt + (call / burstSize) * burstSize * intervalNanos;
+                        if (scheduledAt >= endAt) {
+                            break;
+                        }
+                        waitUntil(scheduledAt);
+
+                        DistributionFrequency.Operation operation = operations[random.nextInt(operations.length)];
+                        long calledAt = System.nanoTime();
+                        if (operation == DistributionFrequency.Operation.ENQ) {
+                            queue.enqueue(element);
+                        } else {
+                            queue.dequeue();
+                        }
+                        long returnedAt = System.nanoTime();
+
+                        if (scheduledAt >= measuringFrom) {
+                            recorder.record(operation, returnedAt - scheduledAt, returnedAt - calledAt);
+                        }
+                    }
+                    synchronized (this) {
+                        recorder.addTo(this);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        /**
+         * @param threadIndex the index of a thread
+         * @return the operations the thread picks from at random
+         */
+        private DistributionFrequency.Operation[] operations(int threadIndex) {
+            switch (workload) {
+                case MIXED:
+                    return DistributionFrequency.valueOf(distribution).operations();
+                case SPLIT:
+                    return new DistributionFrequency.Operation[]{threadIndex % 2 == 0 ?
+                            DistributionFrequency.Operation.ENQ : DistributionFrequency.Operation.DEQ};
+                default:
+                    throw new IllegalArgumentException("Unknown workload: " + workload);
+            }
+        }
+
+        void report(Path csv) {
+            List<String> rows = new ArrayList<>();
+            addRows(rows, "enqueue", enqueue);
+            addRows(rows, "dequeue", dequeue);
+            rows.forEach(row -> System.out.println("latency: " + row));
+
+            try {
+                if (Files.notExists(csv)) {
+                    StringBuilder header = new StringBuilder("queue,workload,distribution,arrivals,threads,rate,"
+                            + "prefill,k,operation,measure,count,mean_ns");
+                    for (double percentile : percentiles) {
+                        header.append(",p").append(label(percentile)).append("_ns");
+                    }
+                    header.append(",max_ns\n");
+                    Files.write(csv, header.toString().getBytes(StandardCharsets.UTF_8));
+                }
+                Files.write(csv, (String.join("\n", rows) + "\n").getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private void addRows(List<String> rows, String operation, Histogram[] histograms) {
+            String[] measures = {"latency", "service"};
+            for (int index = 0; index < measures.length; index++) {
+                Histogram histogram = histograms[index];
+                if (histogram.count() == 0) {
+                    continue;
+                }
+                StringBuilder row = new StringBuilder(String.format(Locale.ROOT,
+                        "%s,%s,%s,%s,%d,%d,%d,%d,%s,%s,%d,%.0f", queueName, workload, distribution, arrivals,
+                        threadCount, rate, prefill, k, operation, measures[index], histogram.count(),
+                        histogram.mean()));
+                for (double percentile : percentiles) {
+                    row.append(',').append(histogram.percentile(percentile));
+                }
+                row.append(',').append(histogram.max());
+                rows.add(row.toString());
+            }
+        }
+
+        private static String label(double percentile) {
+            return (percentile == Math.rint(percentile) ? String.valueOf((long) percentile) :
+                    String.valueOf(percentile)).replace('.', '_');
+        }
+
+        private static void waitUntil(long nanoTime) {
+            long remaining;
+            while ((remaining = nanoTime - System.nanoTime()) > 0) {
+                if (remaining > parkThresholdNanos) {
+                    LockSupport.parkNanos(remaining - parkThresholdNanos);
+                } else {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    /**
+     * The latencies and service times seen by one thread.
+     */
+    private static final class Recorder {
+
+        final Histogram[] enqueue = {new Histogram(), new Histogram()};
+        final Histogram[] dequeue = {new Histogram(), new Histogram()};
+
+        void record(DistributionFrequency.Operation operation, long latency, long serviceTime) {
+            Histogram[] histograms = operation == DistributionFrequency.Operation.ENQ ? enqueue : dequeue;
+            histograms[0].record(latency);
+            histograms[1].record(serviceTime);
+        }
+
+        void addTo(Run run) {
+            for (int index = 0; index < 2; index++) {
+                run.enqueue[index].add(enqueue[index]);
+                run.dequeue[index].add(dequeue[index]);
+            }
+        }
+    }
+}
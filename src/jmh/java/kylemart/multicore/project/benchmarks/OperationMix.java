@@ -0,0 +1,35 @@
+package kylemart.multicore.project.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+
+/**
+ * Per-thread state that picks the next operation according to a {@link DistributionFrequency}.
+ */
+@State(Scope.Thread)
+public class OperationMix {
+
+    @Param
+    public DistributionFrequency distribution;
+
+    private DistributionFrequency.Operation[] operations;
+
+    private SplittableRandom random;
+
+    @Setup
+    public void setUp() {
+        operations = distribution.operations();
+        random = new SplittableRandom();
+    }
+
+    /**
+     * @return the next operation this thread should perform
+     */
+    DistributionFrequency.Operation next() {
+        return operations[random.nextInt(operations.length)];
+    }
+}
@@ -0,0 +1,25 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.PaddedKQueue;
+import org.openjdk.jmh.annotations.Param;
+
+public class PaddedKQueueBenchmark extends QueueBenchmark {
+
+    @Param({"16", "32", "64"})
+    public int k;
+
+    /**
+     * The number of segments; 0 sizes the ring so that it holds {@link #capacity} elements.
+     */
+    @Param({"0"})
+    public int segmentCount;
+
+    @Param({"1", "16"})
+    public int slotStride;
+
+    @Override
+    protected ConcurrentQueue<Integer> createQueue() {
+        return new PaddedKQueue<>(k, segmentCount > 0 ? segmentCount : capacity / k + 1, slotStride);
+    }
+}
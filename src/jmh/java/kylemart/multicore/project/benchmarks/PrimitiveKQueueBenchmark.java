@@ -0,0 +1,143 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.IntKQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.LongKQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link LongKQueue} and {@link IntKQueue} against a {@code KQueue<Long>} carrying the same values. Each
+ * thread enqueues an increasing sequence of ids, so the boxed queue pays for allocating a {@link Long} per enqueue as
+ * it would with real payloads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PrimitiveKQueueBenchmark {
+
+    static final int capacity = 500_000;
+
+    @Param({"KQueue", "LongKQueue", "IntKQueue"})
+    public String implementation;
+
+    @Param({"16", "32", "64"})
+    public int k;
+
+    @Param({"0", "250000"})
+    public int prefill;
+
+    Queue queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = createQueue();
+        for (int count = 0; count < prefill; count++) {
+            queue.enqueue(count);
+        }
+    }
+
+    private Queue createQueue() {
+        int segmentCount = capacity / k + 1;
+        switch (implementation) {
+            case "KQueue":
+                KQueue<Long> boxed = new KQueue<>(k, segmentCount);
+                return new Queue() {
+                    @Override
+                    public boolean enqueue(long value) {
+                        return boxed.enqueue(value);
+                    }
+
+                    @Override
+                    public long dequeue() {
+                        Long value = boxed.dequeue();
+                        return value != null ? value : LongKQueue.EMPTY;
+                    }
+                };
+            case "LongKQueue":
+                LongKQueue longs = new LongKQueue(k, segmentCount);
+                return new Queue() {
+                    @Override
+                    public boolean enqueue(long value) {
+                        return longs.enqueue(value);
+                    }
+
+                    @Override
+                    public long dequeue() {
+                        return longs.dequeue();
+                    }
+                };
+            case "IntKQueue":
+                IntKQueue ints = new IntKQueue(k, segmentCount);
+                return new Queue() {
+                    @Override
+                    public boolean enqueue(long value) {
+                        return ints.enqueue((int) value);
+                    }
+
+                    @Override
+                    public long dequeue() {
+                        return ints.dequeue();
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    public void mixed(OperationMix mix, Ids ids, Blackhole blackhole) {
+        switch (mix.next()) {
+            case ENQ:
+                blackhole.consume(queue.enqueue(ids.next()));
+                break;
+            case DEQ:
+                blackhole.consume(queue.dequeue());
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public boolean enqueue(Ids ids) {
+        return queue.enqueue(ids.next());
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public long dequeue() {
+        return queue.dequeue();
+    }
+
+    /**
+     * The operations shared by the queues under test; only one implementation is loaded per fork.
+     */
+    interface Queue {
+
+        boolean enqueue(long value);
+
+        long dequeue();
+    }
+
+    /**
+     * Per-thread source of ids. Ids stay within the non-negative {@code int} range, so they fit every queue under
+     * test and never collide with the reserved empty values.
+     */
+    @State(Scope.Thread)
+    public static class Ids {
+
+        private int next = 1 << 20;
+
+        long next() {
+            next = (next + 1) & Integer.MAX_VALUE;
+            return next;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.MultiQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a {@link MultiQueue} against the lock-based {@link PriorityBlockingQueue} with the workloads of
+ * {@link QueueBenchmark}: the {@code mixed} workload over every {@link OperationMix}, and the {@code split} group of
+ * dedicated producers and consumers.
+ *
+ * <p>
+ * Unlike the FIFO queues, a priority queue does more work the more its elements differ, so every thread enqueues
+ * random keys, drawn from a table of boxed keys so that enqueuing does not allocate. How far out of order a
+ * MultiQueue hands out its elements is measured by {@link RelaxationBenchmark}.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PriorityQueueBenchmark {
+
+    static final int capacity = 500_000;
+
+    @Param({"MultiQueue", "PriorityBlockingQueue"})
+    public String implementation;
+
+    /**
+     * The number of heaps of a {@link MultiQueue}.
+     */
+    @Param({"8", "16", "32"})
+    public int heapCount;
+
+    @Param({"0", "250000"})
+    public int prefill;
+
+    ConcurrentQueue<Integer> queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = createQueue();
+        Keys keys = new Keys();
+        keys.setUp();
+        for (int count = 0; count < prefill; count++) {
+            queue.enqueue(keys.next());
+        }
+    }
+
+    private ConcurrentQueue<Integer> createQueue() {
+        switch (implementation) {
+            case "MultiQueue":
+                return new MultiQueue<>(heapCount, capacity / heapCount + 1, Comparator.naturalOrder());
+            case "PriorityBlockingQueue":
+                return new JdkQueueBenchmark.JdkQueue<>(new PriorityBlockingQueue<>(capacity));
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Benchmark
+    public void mixed(OperationMix mix, Keys keys, Blackhole blackhole) {
+        switch (mix.next()) {
+            case ENQ:
+                blackhole.consume(queue.enqueue(keys.next()));
+                break;
+            case DEQ:
+                blackhole.consume(queue.dequeue());
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public boolean enqueue(Keys keys) {
+        return queue.enqueue(keys.next());
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public Integer dequeue() {
+        return queue.dequeue();
+    }
+
+    /**
+     * Per-thread table of random keys, handed out round-robin.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+
+        private static final int keyCount = 1 << 12;
+
+        private final Integer[] keys = new Integer[keyCount];
+
+        private int next;
+
+        @Setup
+        public void setUp() {
+            SplittableRandom random = new SplittableRandom();
+            for (int index = 0; index < keyCount; index++) {
+                keys[index] = random.nextInt(1 << 20);
+            }
+        }
+
+        Integer next() {
+            Integer key = keys[next];
+            next = (next + 1) & (keyCount - 1);
+            return key;
+        }
+    }
+}
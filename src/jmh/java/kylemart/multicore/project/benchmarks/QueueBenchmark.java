@@ -0,0 +1,96 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.QueueMetrics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common JMH harness for {@link ConcurrentQueue} implementations.
+ *
+ * <p>
+ * Two workloads are measured against a queue shared by every benchmark thread: {@code mixed}, where each thread
+ * randomly enqueues or dequeues according to an {@link OperationMix}, and the {@code split} group, where dedicated
+ * producer and consumer threads work against each other. The queue is rebuilt and pre-filled with {@code prefill}
+ * elements before every iteration so that runs do not depend on what the previous iteration left behind.
+ * </p>
+ *
+ * <p>
+ * If the JVM runs with {@value QueueMetrics#PROPERTY}{@code =true}, e.g. with
+ * {@code -jvmArgsAppend -Dkylemart.multicore.project.queues.metrics=true}, the contention counters of instrumented
+ * queues are printed after every iteration.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public abstract class QueueBenchmark {
+
+    static final int capacity = 500_000;
+
+    static final Integer element = 1;
+
+    @Param({"0", "250000"})
+    public int prefill;
+
+    ConcurrentQueue<Integer> queue;
+
+    /**
+     * @return a new, empty queue able to hold at least {@link #capacity} elements
+     */
+    protected abstract ConcurrentQueue<Integer> createQueue();
+
+    /**
+     * @return the contention counters of {@link #queue}; <code>null</code> if it is not instrumented
+     */
+    protected QueueMetrics metrics() {
+        return null;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = createQueue();
+        for (int count = 0; count < prefill; count++) {
+            queue.enqueue(element);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printMetrics() {
+        QueueMetrics metrics = metrics();
+        if (QueueMetrics.ENABLED && metrics != null) {
+            System.out.println("metrics: " + metrics);
+        }
+    }
+
+    @Benchmark
+    public void mixed(OperationMix mix, Blackhole blackhole) {
+        switch (mix.next()) {
+            case ENQ:
+                blackhole.consume(queue.enqueue(element));
+                break;
+            case DEQ:
+                blackhole.consume(queue.dequeue());
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public boolean enqueue() {
+        return queue.enqueue(element);
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public Integer dequeue() {
+        return queue.dequeue();
+    }
+}
@@ -0,0 +1,177 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.MultiQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how far out of order a {@link KQueue} hands out its elements, to weigh the throughput of a larger k against
+ * its loss of ordering. The same is measured for a {@link MultiQueue} whose priorities are the sequence numbers, so
+ * that its strict order is the FIFO order; its number of heaps is given by k.
+ *
+ * <p>
+ * Every thread enqueues an element stamped with a global sequence number and the time, then dequeues an element, so
+ * the queue stays at {@code prefill} elements. A strict FIFO queue would hand out the element with sequence number n
+ * on the n-th dequeue; the <em>rank error</em> of a dequeue is how far the sequence number of its element is from
+ * that. The <em>age</em> of an element is the time it spent in the queue. Sequence numbers are drawn just before an
+ * element is enqueued and dequeue numbers just after it is dequeued, so even a strict FIFO queue shows a rank error
+ * of up to about the number of threads.
+ * </p>
+ *
+ * <p>
+ * Besides the throughput reported by JMH, each run appends a row with the distribution of both measures over all
+ * measurement iterations to a CSV file, {@code relaxation.csv} unless the system property {@value #csvProperty} names
+ * another. Joined with the JMH results on the queue, k and the thread count, the rows plot throughput against
+ * ordering across the k sweep.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RelaxationBenchmark {
+
+    static final String csvProperty = "relaxation.csv";
+
+    static final int capacity = 500_000;
+
+    @Param({"KQueue"})
+    public String implementation;
+
+    /**
+     * The k of a {@link KQueue}, or the number of heaps of a {@link MultiQueue}.
+     */
+    @Param({"16", "32", "64"})
+    public int k;
+
+    @Param({"1024"})
+    public int prefill;
+
+    ConcurrentQueue<Element> queue;
+
+    final AtomicLong enqueueSequence = new AtomicLong();
+
+    final AtomicLong dequeueSequence = new AtomicLong();
+
+    /**
+     * The measurement iterations of every thread, added up.
+     */
+    final Histogram rankError = new Histogram();
+
+    final Histogram age = new Histogram();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = createQueue();
+        enqueueSequence.set(0);
+        dequeueSequence.set(0);
+        for (int count = 0; count < prefill; count++) {
+            enqueue();
+        }
+    }
+
+    private ConcurrentQueue<Element> createQueue() {
+        switch (implementation) {
+            case "KQueue":
+                return new KQueue<>(k, capacity / k + 1);
+            case "MultiQueue":
+                Comparator<Element> bySequence = Comparator.comparingLong(element -> element.sequence);
+                return new MultiQueue<>(k, capacity / k + 1, bySequence);
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void report(BenchmarkParams params) {
+        String row = String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%.2f,%d,%d,%d,%d,%.0f,%d,%d,%d,%d",
+                implementation, k, params.getThreads(), prefill, rankError.count(),
+                rankError.mean(), rankError.percentile(50), rankError.percentile(90), rankError.percentile(99),
+                rankError.max(),
+                age.mean(), age.percentile(50), age.percentile(90), age.percentile(99), age.max());
+        System.out.println("rank error / age: " + row);
+
+        Path csv = Paths.get(System.getProperty(csvProperty, "relaxation.csv"));
+        try {
+            if (Files.notExists(csv)) {
+                Files.write(csv, ("queue,k,threads,prefill,dequeues,"
+                        + "rank_mean,rank_p50,rank_p90,rank_p99,rank_max,"
+                        + "age_mean_ns,age_p50_ns,age_p90_ns,age_p99_ns,age_max_ns\n").getBytes(StandardCharsets.UTF_8));
+            }
+            Files.write(csv, (row + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Benchmark
+    public void enqueueDequeue(Recorder recorder) {
+        enqueue();
+        Element element = queue.dequeue();
+        if (element != null) {
+            long dequeuedAt = System.nanoTime();
+            recorder.rankError.record(Math.abs(element.sequence - dequeueSequence.getAndIncrement()));
+            recorder.age.record(dequeuedAt - element.enqueuedAt);
+        }
+    }
+
+    private void enqueue() {
+        queue.enqueue(new Element(enqueueSequence.getAndIncrement(), System.nanoTime()));
+    }
+
+    /**
+     * An element that remembers when it was enqueued.
+     */
+    static final class Element {
+
+        final long sequence;
+
+        final long enqueuedAt;
+
+        Element(long sequence, long enqueuedAt) {
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * The rank errors and ages seen by one thread during one iteration.
+     */
+    @State(Scope.Thread)
+    public static class Recorder {
+
+        final Histogram rankError = new Histogram();
+
+        final Histogram age = new Histogram();
+
+        @TearDown(Level.Iteration)
+        public void collect(RelaxationBenchmark benchmark, IterationParams params) {
+            if (params.getType() == IterationType.MEASUREMENT) {
+                synchronized (benchmark) {
+                    benchmark.rankError.add(rankError);
+                    benchmark.age.add(age);
+                }
+            }
+            rankError.reset();
+            age.reset();
+        }
+    }
+}
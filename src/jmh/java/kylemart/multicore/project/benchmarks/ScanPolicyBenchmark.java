@@ -0,0 +1,87 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.ScanPolicy;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ScanPolicy scan policies} of {@link KQueue} on a dequeue-heavy workload, where concurrent
+ * dequeue operations compete for the slots of the head segment. {@code mixed} has every thread perform the
+ * {@link DistributionFrequency#ENQ_25_DEQ_75} mix; the {@code split} group runs one producer against three consumers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ScanPolicyBenchmark {
+
+    static final int capacity = 500_000;
+
+    static final Integer element = 1;
+
+    @Param({"16", "64"})
+    public int k;
+
+    @Param
+    public ScanPolicy scanPolicy;
+
+    @Param({"250000"})
+    public int prefill;
+
+    KQueue<Integer> queue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = new KQueue<>(k, capacity / k + 1, scanPolicy);
+        for (int count = 0; count < prefill; count++) {
+            queue.enqueue(element);
+        }
+    }
+
+    @Benchmark
+    public void mixed(DequeueHeavyMix mix, Blackhole blackhole) {
+        switch (mix.next()) {
+            case ENQ:
+                blackhole.consume(queue.enqueue(element));
+                break;
+            case DEQ:
+                blackhole.consume(queue.dequeue());
+                break;
+        }
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(1)
+    public boolean enqueue() {
+        return queue.enqueue(element);
+    }
+
+    @Benchmark
+    @Group("split")
+    @GroupThreads(3)
+    public Integer dequeue() {
+        return queue.dequeue();
+    }
+
+    /**
+     * Per-thread state that picks operations according to {@link DistributionFrequency#ENQ_25_DEQ_75}.
+     */
+    @State(Scope.Thread)
+    public static class DequeueHeavyMix {
+
+        private final DistributionFrequency.Operation[] operations = DistributionFrequency.ENQ_25_DEQ_75.operations();
+
+        private final SplittableRandom random = new SplittableRandom();
+
+        DistributionFrequency.Operation next() {
+            return operations[random.nextInt(operations.length)];
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.ShardedQueue;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Runs the {@link QueueBenchmark} workloads against a {@link ShardedQueue} whose shards together hold
+ * {@link #capacity} elements, for comparison with a single {@link kylemart.multicore.project.queues.KQueue} of the
+ * same capacity in {@link KQueueBenchmark}.
+ */
+public class ShardedQueueBenchmark extends QueueBenchmark {
+
+    @Param({"2", "4", "8"})
+    public int shardCount;
+
+    @Param({"16"})
+    public int k;
+
+    @Override
+    protected ConcurrentQueue<Integer> createQueue() {
+        return new ShardedQueue<>(shardCount, k, capacity / shardCount / k + 1);
+    }
+}
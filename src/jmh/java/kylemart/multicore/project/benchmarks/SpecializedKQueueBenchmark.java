@@ -0,0 +1,112 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.AccessMode;
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.KQueue;
+import kylemart.multicore.project.queues.SpecializedKQueue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a {@link SpecializedKQueue} against a {@link KQueue} of the same capacity under the thread counts each
+ * {@link AccessMode} allows: the {@code spsc} group has one producer and one consumer, {@code mpsc} two producers and
+ * one consumer, and {@code spmc} one producer and two consumers. A {@link SpecializedKQueue} runs in the access mode
+ * named by the group.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SpecializedKQueueBenchmark {
+
+    static final int capacity = 500_000;
+
+    static final Integer element = 1;
+
+    @Param({"KQueue", "SpecializedKQueue"})
+    public String implementation;
+
+    @Param({"16", "64"})
+    public int k;
+
+    @Param({"0", "250000"})
+    public int prefill;
+
+    ConcurrentQueue<Integer> queue;
+
+    @Setup(Level.Iteration)
+    public void setUp(BenchmarkParams params) {
+        queue = createQueue(accessMode(params));
+        for (int count = 0; count < prefill; count++) {
+            queue.enqueue(element);
+        }
+    }
+
+    private ConcurrentQueue<Integer> createQueue(AccessMode accessMode) {
+        switch (implementation) {
+            case "KQueue":
+                return new KQueue<>(k, capacity / k + 1);
+            case "SpecializedKQueue":
+                return new SpecializedKQueue<>(k, capacity / k + 1, accessMode);
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    /**
+     * @param params the parameters of the running benchmark
+     * @return the access mode named by the running group
+     */
+    private static AccessMode accessMode(BenchmarkParams params) {
+        String benchmark = params.getBenchmark();
+        String group = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+        return AccessMode.valueOf(group.toUpperCase(Locale.ROOT));
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean spscEnqueue() {
+        return queue.enqueue(element);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Integer spscDequeue() {
+        return queue.dequeue();
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(2)
+    public boolean mpscEnqueue() {
+        return queue.enqueue(element);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public Integer mpscDequeue() {
+        return queue.dequeue();
+    }
+
+    @Benchmark
+    @Group("spmc")
+    @GroupThreads(1)
+    public boolean spmcEnqueue() {
+        return queue.enqueue(element);
+    }
+
+    @Benchmark
+    @Group("spmc")
+    @GroupThreads(2)
+    public Integer spmcDequeue() {
+        return queue.dequeue();
+    }
+}
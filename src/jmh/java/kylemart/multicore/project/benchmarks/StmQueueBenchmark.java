@@ -0,0 +1,55 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.ContentionPolicy;
+import kylemart.multicore.project.queues.QueueMetrics;
+import kylemart.multicore.project.queues.StmKQueue;
+import kylemart.multicore.project.queues.StmQueue;
+import kylemart.multicore.project.queues.StmRingQueue;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Runs the {@link QueueBenchmark} workloads against the transactional queues: {@link StmQueue}, built on a
+ * transactional linked list, {@link StmRingQueue}, whose enqueues and dequeues do not conflict, and
+ * {@link StmKQueue}, which spreads each side over k slots, with each {@link ContentionPolicy}. The StmKQueue results
+ * compare with those of {@link KQueueBenchmark} for the same k.
+ */
+public class StmQueueBenchmark extends QueueBenchmark {
+
+    @Param({"StmQueue", "StmRingQueue", "StmKQueue"})
+    public String implementation;
+
+    /**
+     * The k of a {@link StmKQueue}; ignored by the other queues.
+     */
+    @Param({"16"})
+    public int k;
+
+    @Param
+    public ContentionPolicy contentionPolicy;
+
+    @Override
+    protected ConcurrentQueue<Integer> createQueue() {
+        switch (implementation) {
+            case "StmQueue":
+                return new StmQueue<>(capacity, contentionPolicy);
+            case "StmRingQueue":
+                return new StmRingQueue<>(capacity, contentionPolicy);
+            case "StmKQueue":
+                return new StmKQueue<>(k, capacity / k + 1, contentionPolicy);
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    @Override
+    protected QueueMetrics metrics() {
+        if (queue instanceof StmKQueue) {
+            return ((StmKQueue<Integer>) queue).metrics();
+        }
+        if (queue instanceof StmRingQueue) {
+            return ((StmRingQueue<Integer>) queue).metrics();
+        }
+        return ((StmQueue<Integer>) queue).metrics();
+    }
+}
@@ -0,0 +1,19 @@
+package kylemart.multicore.project.benchmarks;
+
+import kylemart.multicore.project.queues.ConcurrentQueue;
+import kylemart.multicore.project.queues.UnboundedKQueue;
+import org.openjdk.jmh.annotations.Param;
+
+public class UnboundedKQueueBenchmark extends QueueBenchmark {
+
+    @Param({"16", "32", "64"})
+    public int k;
+
+    @Param({"64"})
+    public int freeSegmentCount;
+
+    @Override
+    protected ConcurrentQueue<Integer> createQueue() {
+        return new UnboundedKQueue<>(k, freeSegmentCount);
+    }
+}
@@ -0,0 +1,32 @@
+package kylemart.multicore.project.queues;
+
+/**
+ * How many threads may enqueue to and dequeue from a {@link SpecializedKQueue}. A side that only ever has a single
+ * thread needs no atomic read-modify-write operations among its own threads.
+ */
+public enum AccessMode {
+
+    /**
+     * A single thread enqueues and a single thread dequeues.
+     */
+    SPSC(true, true),
+
+    /**
+     * Any number of threads enqueue and a single thread dequeues.
+     */
+    MPSC(false, true),
+
+    /**
+     * A single thread enqueues and any number of threads dequeue.
+     */
+    SPMC(true, false);
+
+    final boolean singleProducer;
+
+    final boolean singleConsumer;
+
+    AccessMode(boolean singleProducer, boolean singleConsumer) {
+        this.singleProducer = singleProducer;
+        this.singleConsumer = singleConsumer;
+    }
+}
@@ -0,0 +1,262 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, lock-free queue whose k adapts to contention.
+ *
+ * <p>
+ * This is a {@link KQueue} whose segments all have room for {@code maxK} elements, but whose enqueue operations only
+ * use the first <em>width</em> slots of a segment. Every segment gets its width when it becomes the tail segment, so
+ * a change only ever applies to segments that are newly used. The width starts at {@code minK} and is adjusted from
+ * the contention seen while the previous tail segment was filled: it doubles, up to {@code maxK}, if more than one in
+ * {@link #widenRatio} insertions lost a compare-and-set race, and halves, down to {@code minK}, if fewer than one in
+ * {@link #narrowRatio} did. A few threads thus get the ordering and locality of a small k, and many threads the
+ * spread of a large k.
+ * </p>
+ *
+ * <p>
+ * Elements may be dequeued out-of-order up to the width of the head segment minus one; never more than
+ * {@code maxK - 1}. The capacity of the queue is {@code segmentCount} times the width of its segments, and thus lies
+ * between {@code segmentCount * minK} and {@code segmentCount * maxK}. Dequeue operations always search the whole
+ * segment, as an enqueue that was delayed while the width changed may still insert beyond it.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see KQueue
+ */
+public class AdaptiveKQueue<E> implements ConcurrentQueue<E> {
+
+    /**
+     * The width doubles if there was more than one failed compare-and-set for this many insertions.
+     */
+    static final int widenRatio = 4;
+
+    /**
+     * The width halves if there was less than one failed compare-and-set for this many insertions.
+     */
+    static final int narrowRatio = 32;
+
+    /**
+     * The {@link StampedIndex stamped index} of the head segment; this is where dequeue operations occur.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The {@link StampedIndex stamped index} of the tail segment; this is where enqueue operations occur.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * This should be read-only. Each k-segment in this array represents a queryable buffer of atomic references.
+     */
+    private final Segment<E>[] segments;
+
+    /**
+     * The width of each segment, i.e. the number of slots enqueue operations use, in the low 32 bits, stamped with the
+     * version of the tail that the segment was given it for in the high 32 bits.
+     */
+    private final AtomicLongArray widths;
+
+    /**
+     * The failed compare-and-set operations on slots since the tail last advanced.
+     */
+    private final LongAdder contention = new LongAdder();
+
+    private final int minK;
+
+    private final int maxK;
+
+    /**
+     * Instantiates a new AdaptiveKQueue with a specified number of segments and bounds on k.
+     *
+     * @param minK         the smallest number of enqueue and dequeue operations that can be performed in parallel
+     * @param maxK         the largest number of enqueue and dequeue operations that can be performed in parallel
+     * @param segmentCount the number of segments
+     */
+    @SuppressWarnings("unchecked")
+    public AdaptiveKQueue(int minK, int maxK, int segmentCount) {
+        if (minK < 1 || maxK < minK) {
+            throw new IllegalArgumentException("Expected 1 <= minK <= maxK, got minK=" + minK + ", maxK=" + maxK);
+        }
+        this.minK = minK;
+        this.maxK = maxK;
+        segments = (Segment<E>[]) new Segment[segmentCount];
+        widths = new AtomicLongArray(segmentCount);
+        for (int index = 0; index < segmentCount; index++) {
+            segments[index] = new Segment<>(maxK);
+            widths.set(index, minK);
+        }
+    }
+
+    @Override
+    public boolean enqueue(@NotNull E element) {
+        while (true) {
+            long oldTail = tail.get();
+            long oldHead = head.get();
+            int oldTailIndex = StampedIndex.index(oldTail);
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            Segment<E> oldTailSegment = segments[oldTailIndex];
+            Segment<E> oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldTail != tail.get()) {
+                continue;
+            }
+
+            int emptySlotIndex = oldTailSegment.getEmptySlotIndex(width(oldTailIndex));
+            if (emptySlotIndex >= 0) {
+                if (oldTailSegment.slots.compareAndSet(emptySlotIndex, null, element)) {
+                    if (committed(oldTailIndex, oldTailSegment, emptySlotIndex, element)) {
+                        return true;
+                    }
+                } else {
+                    contention.increment();
+                }
+            } else {
+                if (nextSegmentIndex(oldTailIndex) == oldHeadIndex) {
+                    if (oldHeadSegment.isOccupied()) {
+                        if (oldHead == head.get()) {
+                            return false;
+                        }
+                    } else {
+                        advanceHead(oldHead);
+                    }
+                }
+                advanceTail(oldTail);
+            }
+        }
+    }
+
+    @Override
+    public E dequeue() {
+        while (true) {
+            // The head is read first, so that the tail read after it is never behind it.
+            long oldHead = head.get();
+            long oldTail = tail.get();
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            int oldTailIndex = StampedIndex.index(oldTail);
+            Segment<E> oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldHead != head.get()) {
+                continue;
+            }
+
+            int foundIndex = oldHeadSegment.findFirstElement();
+            if (foundIndex >= 0) {
+                E found = oldHeadSegment.slots.get(foundIndex);
+                if (oldTailIndex == oldHeadIndex) {
+                    advanceTail(oldTail);
+                }
+                if (found != null && oldHeadSegment.slots.compareAndSet(foundIndex, found, null)) {
+                    return found;
+                }
+                contention.increment();
+            } else {
+                if (oldTailIndex == oldHeadIndex && oldTail == tail.get()) {
+                    return null;
+                }
+                advanceHead(oldHead);
+            }
+        }
+    }
+
+    /**
+     * @return the width that the current tail segment was given
+     */
+    public int width() {
+        return width(StampedIndex.index(tail.get()));
+    }
+
+    /**
+     * Validates an insertion. An insertion is valid if the inserted item already got dequeued at validation time by a
+     * concurrent operation or it is in the desired range. Tries to undo the insertion if something went wrong.
+     *
+     * @param oldTailIndex    the old tail index
+     * @param oldTailSegment  the old tail segment
+     * @param slotIndex       the index where the expected element should lie
+     * @param expectedElement the expected element
+     * @return true if successful; false otherwise
+     */
+    private boolean committed(int oldTailIndex, Segment<E> oldTailSegment, int slotIndex, E expectedElement) {
+        if (oldTailSegment.slots.get(slotIndex) != expectedElement) {
+            return true;
+        }
+
+        return StampedIndex.isInRange(head, tail, oldTailIndex)
+                || !oldTailSegment.slots.compareAndSet(slotIndex, expectedElement, null);
+    }
+
+    /**
+     * Returns the next logical index, with wrap-around, after the given index.
+     *
+     * @param segmentIndex the index to advance from
+     * @return the next logical index, with wrap-around, after the base index
+     */
+    private int nextSegmentIndex(int segmentIndex) {
+        return (segmentIndex + 1) % segments.length;
+    }
+
+    /**
+     * Advances the head to point to the next logical segment, with wrap-around.
+     *
+     * @param oldHead the old stamped head index
+     */
+    private void advanceHead(long oldHead) {
+        head.compareAndSet(oldHead, StampedIndex.next(oldHead, nextSegmentIndex(StampedIndex.index(oldHead))));
+    }
+
+    /**
+     * @param segmentIndex the index of a segment
+     * @return the width of the segment
+     */
+    private int width(int segmentIndex) {
+        return (int) widths.get(segmentIndex);
+    }
+
+    /**
+     * Advances the tail to point to the next logical segment, with wrap-around.
+     *
+     * <p>
+     * The new tail segment gets its width before the tail moves, while no enqueue uses it yet, so that no enqueue ever
+     * uses the width it had on its previous lap. Every thread that tries to advance the tail may set the width, but
+     * only for a version of the tail newer than the one the width already belongs to: a thread that lost the race, or
+     * tries to advance a tail that has long moved on, cannot overwrite the width of a segment in use.
+     * </p>
+     *
+     * @param oldTail the old stamped tail index
+     */
+    private void advanceTail(long oldTail) {
+        int oldTailIndex = StampedIndex.index(oldTail);
+        int newTailIndex = nextSegmentIndex(oldTailIndex);
+        long newTail = StampedIndex.next(oldTail, newTailIndex);
+        int newVersion = (int) (newTail >>> 32);
+        long current;
+        while ((int) ((current = widths.get(newTailIndex)) >>> 32) - newVersion < 0) {
+            int width = adapt(width(oldTailIndex), contention.sum());
+            if (widths.compareAndSet(newTailIndex, current, ((long) newVersion << 32) | width)) {
+                break;
+            }
+        }
+        if (tail.compareAndSet(oldTail, newTail)) {
+            contention.reset();
+        }
+    }
+
+    /**
+     * @param width    the width of the segment that was just filled
+     * @param failures the failed compare-and-set operations while it was filled
+     * @return the width of the next segment
+     */
+    private int adapt(int width, long failures) {
+        if (failures * widenRatio > width) {
+            return Math.min(width * 2, maxK);
+        } else if (failures * narrowRatio < width) {
+            return Math.max(width / 2, minK);
+        }
+        return width;
+    }
+}
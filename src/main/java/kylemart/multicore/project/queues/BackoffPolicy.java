@@ -0,0 +1,70 @@
+package kylemart.multicore.project.queues;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How long an operation of a {@link KQueue} waits before it retries after losing a race to another thread, such as a
+ * failed compare-and-set on a slot or an index that moved while it was being read.
+ *
+ * <p>
+ * Retrying at once keeps every contending thread hammering the same cache lines of the slots and indexes, so that
+ * each retry is likely to fail again. Backing off lets the winner finish and the cache lines settle, which raises the
+ * throughput under heavy contention, but delays the operations that back off. The number of failed retries is kept
+ * on the stack of the operation, so backing off needs neither allocation nor state shared between threads.
+ * </p>
+ */
+public enum BackoffPolicy {
+
+    /**
+     * Retries at once. This is the original behaviour of the queue.
+     */
+    NONE {
+        @Override
+        void backoff(int attempt) {
+        }
+    },
+
+    /**
+     * Spins for twice as long after every failed retry, up to {@link #MAX_SPINS} spins.
+     */
+    EXPONENTIAL_SPIN {
+        @Override
+        void backoff(int attempt) {
+            spin(1 << Math.min(attempt, MAX_SHIFT));
+        }
+    },
+
+    /**
+     * Spins for a random time of up to twice as long after every failed retry, up to {@link #MAX_SPINS} spins.
+     * Threads that failed at the same moment retry at different moments, rather than colliding again.
+     */
+    RANDOMIZED {
+        @Override
+        void backoff(int attempt) {
+            spin(1 + ThreadLocalRandom.current().nextInt(1 << Math.min(attempt, MAX_SHIFT)));
+        }
+    };
+
+    /**
+     * The binary logarithm of {@link #MAX_SPINS}.
+     */
+    static final int MAX_SHIFT = 10;
+
+    /**
+     * The most spins a thread waits between two retries.
+     */
+    static final int MAX_SPINS = 1 << MAX_SHIFT;
+
+    /**
+     * Waits once between two retries of an operation that lost a race.
+     *
+     * @param attempt the number of retries that failed before this one, from zero on
+     */
+    abstract void backoff(int attempt);
+
+    private static void spin(int spins) {
+        for (int spin = 0; spin < spins; spin++) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A blocking view of a {@link ConcurrentQueue}, with the insertion and removal operations of a
+ * {@link java.util.concurrent.BlockingQueue}.
+ *
+ * <p>
+ * {@link #offer(Object)} and {@link #poll()} go straight to the wrapped queue. Only once an operation has failed
+ * do {@link #put}, {@link #take} and the timed variants wait, as prescribed by a {@link WaitStrategy}, and retry. With
+ * {@link WaitStrategy#PARK}, every successful operation additionally checks whether a thread on the other side is
+ * waiting to be woken up; the other strategies leave the operations of the wrapped queue as they are.
+ * </p>
+ *
+ * <p>
+ * This is not a {@link java.util.concurrent.BlockingQueue}: a {@link ConcurrentQueue} can neither be inspected,
+ * iterated nor asked for its capacity, so this queue cannot honour the rest of that interface. Elements are ordered as
+ * by the wrapped queue, e.g. with the relaxed order of a {@link KQueue}.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class BlockingConcurrentQueue<E> {
+
+    private final ConcurrentQueue<E> queue;
+
+    /**
+     * The threads waiting for the queue to become non-empty.
+     */
+    private final Waiters notEmpty;
+
+    /**
+     * The threads waiting for the queue to become non-full.
+     */
+    private final Waiters notFull;
+
+    /**
+     * Instantiates a new BlockingConcurrentQueue.
+     *
+     * @param queue        the queue to wrap; should not be used other than through this queue, as threads waiting with
+     *                     {@link WaitStrategy#PARK} are not woken up by direct operations on it
+     * @param waitStrategy how threads wait for the queue to become non-empty or non-full
+     */
+    public BlockingConcurrentQueue(@NotNull ConcurrentQueue<E> queue, @NotNull WaitStrategy waitStrategy) {
+        this.queue = queue;
+        this.notEmpty = new Waiters(waitStrategy);
+        this.notFull = new Waiters(waitStrategy);
+    }
+
+    /**
+     * Inserts the {@code element} if the wrapped queue has room for it, without waiting.
+     *
+     * @param element the element to insert
+     * @return <code>true</code> if the element was inserted; <code>false</code> if the queue is full
+     */
+    public boolean offer(@NotNull E element) {
+        Objects.requireNonNull(element);
+        if (queue.enqueue(element)) {
+            notEmpty.signal();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes an element if there is one, without waiting.
+     *
+     * @return the removed element; otherwise <code>null</code> if the queue is empty
+     */
+    public E poll() {
+        E element = queue.dequeue();
+        if (element != null) {
+            notFull.signal();
+        }
+        return element;
+    }
+
+    /**
+     * Inserts the {@code element}, waiting for the queue to have room for it if necessary.
+     *
+     * @param element the element to insert
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void put(@NotNull E element) throws InterruptedException {
+        offer(element, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Inserts the {@code element}, waiting up to the {@code timeout} for the queue to have room for it if necessary.
+     *
+     * @param element the element to insert
+     * @param timeout how long to wait, in units of {@code unit}
+     * @param unit    the unit of the {@code timeout}
+     * @return <code>true</code> if the element was inserted; <code>false</code> if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean offer(@NotNull E element, long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        if (offer(element)) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        notFull.register();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                if (offer(element)) {
+                    return true;
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                notFull.await(attempt, remainingNanos);
+            }
+        } finally {
+            notFull.deregister();
+        }
+    }
+
+    /**
+     * Removes an element, waiting for one to be inserted if necessary.
+     *
+     * @return the removed element
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E take() throws InterruptedException {
+        return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Removes an element, waiting up to the {@code timeout} for one to be inserted if necessary.
+     *
+     * @param timeout how long to wait, in units of {@code unit}
+     * @param unit    the unit of the {@code timeout}
+     * @return the removed element; otherwise <code>null</code> if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public E poll(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        notEmpty.register();
+        try {
+            for (int attempt = 0; ; attempt++) {
+                element = poll();
+                if (element != null) {
+                    return element;
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return null;
+                }
+                notEmpty.await(attempt, remainingNanos);
+            }
+        } finally {
+            notEmpty.deregister();
+        }
+    }
+
+    /**
+     * Removes every element there is, without waiting, and adds them to the {@code collection}.
+     *
+     * @param collection the collection to add the elements to
+     * @return the number of elements removed
+     */
+    public int drainTo(@NotNull Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes up to {@code maxElements} elements, without waiting, and adds them to the {@code collection}.
+     *
+     * @param collection  the collection to add the elements to
+     * @param maxElements the maximum number of elements to remove
+     * @return the number of elements removed
+     */
+    public int drainTo(@NotNull Collection<? super E> collection, int maxElements) {
+        int drained = 0;
+        while (drained < maxElements) {
+            E element = poll();
+            if (element == null) {
+                break;
+            }
+            collection.add(element);
+            drained++;
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,61 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the elements of a {@link DurableKQueue} into the bytes of its journal and back.
+ *
+ * @param <E> the type of elements encoded
+ */
+public interface Codec<E> {
+
+    /**
+     * @param element the element to encode
+     * @return the bytes of the element; never empty
+     */
+    byte[] encode(@NotNull E element);
+
+    /**
+     * @param bytes the bytes of an element, from its position to its limit, as returned by {@link #encode(Object)}
+     * @return the decoded element
+     */
+    E decode(@NotNull ByteBuffer bytes);
+
+    /**
+     * @return a codec that stores strings as UTF-8; it cannot encode the empty string
+     */
+    static Codec<String> utf8() {
+        return new Codec<String>() {
+            @Override
+            public byte[] encode(@NotNull String element) {
+                return element.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(@NotNull ByteBuffer bytes) {
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            }
+        };
+    }
+
+    /**
+     * @return a codec that stores integers as four big-endian bytes
+     */
+    static Codec<Integer> integers() {
+        return new Codec<Integer>() {
+            @Override
+            public byte[] encode(@NotNull Integer element) {
+                int value = element;
+                return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+            }
+
+            @Override
+            public Integer decode(@NotNull ByteBuffer bytes) {
+                return bytes.getInt();
+            }
+        };
+    }
+}
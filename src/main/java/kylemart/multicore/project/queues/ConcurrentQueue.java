@@ -20,4 +20,46 @@ public interface ConcurrentQueue<T> {
      * @return <code>true</code> if a value was removed; <code>false</code> otherwise
      */
     T dequeue();
+
+    /**
+     * Enqueues {@code length} values, starting at {@code values[offset]}, to the end of the queue. Stops at the first
+     * value that cannot be enqueued.
+     *
+     * <p>
+     * Implementations may reorder the values within the given range, but no others, so that the values that were
+     * enqueued come first; the caller should not rely on the order of the range afterwards.
+     * </p>
+     *
+     * @param values the values to enqueue
+     * @param offset the index of the first value to enqueue
+     * @param length the number of values to enqueue
+     * @return the number of values enqueued; these are the first values of the given range
+     */
+    default int enqueueAll(T[] values, int offset, int length) {
+        int enqueued = 0;
+        while (enqueued < length && enqueue(values[offset + enqueued])) {
+            enqueued++;
+        }
+        return enqueued;
+    }
+
+    /**
+     * Removes up to {@code max} elements from the front of the queue and stores them in {@code destination},
+     * starting at index 0. Stops once the queue is empty.
+     *
+     * @param destination the array to store the removed elements in
+     * @param max         the maximum number of elements to remove
+     * @return the number of elements removed
+     */
+    default int drainTo(T[] destination, int max) {
+        int drained = 0;
+        while (drained < max) {
+            T value = dequeue();
+            if (value == null) {
+                break;
+            }
+            destination[drained++] = value;
+        }
+        return drained;
+    }
 }
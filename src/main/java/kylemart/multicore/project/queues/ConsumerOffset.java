@@ -0,0 +1,118 @@
+package kylemart.multicore.project.queues;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The sequence number below which every record of a {@link Journal} has been consumed, kept in a memory-mapped file.
+ *
+ * <p>
+ * Records are acknowledged in whatever order they are dequeued, which for a {@link KQueue} is not their order in the
+ * journal. Acknowledgements are marked in a bitmap with one bit per sequence number, modulo the size of the bitmap, and
+ * compacted into the offset: whichever thread finds the record at the offset acknowledged moves the offset past every
+ * acknowledged record that follows, clearing their bits. Acknowledged records above the offset are not persisted, and
+ * are delivered again after a restart. The records that are neither acknowledged nor below the offset must never span
+ * more sequence numbers than the bitmap has bits, or the bits of two records would collide; see {@link #window()}.
+ * </p>
+ */
+class ConsumerOffset {
+
+    /**
+     * One bit per sequence number, modulo the window.
+     */
+    private final AtomicLongArray acknowledged;
+
+    private final long mask;
+
+    /**
+     * Holds the offset; survives the process as soon as it is written.
+     */
+    private final MappedByteBuffer file;
+
+    private volatile long offset;
+
+    /**
+     * Held by the thread that compacts acknowledgements into the offset.
+     */
+    private final ReentrantLock compaction = new ReentrantLock();
+
+    /**
+     * Instantiates a new ConsumerOffset, reading the offset from the file if it exists.
+     *
+     * @param path   the file of the offset
+     * @param window the minimum number of sequence numbers above the offset that can be acknowledged
+     * @throws IOException if the file cannot be read or written
+     */
+    ConsumerOffset(Path path, int window) throws IOException {
+        int bits = Math.max(Long.SIZE, Integer.highestOneBit(window - 1) << 1);
+        acknowledged = new AtomicLongArray(bits / Long.SIZE);
+        mask = bits - 1;
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            file = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        offset = file.getLong(0);
+    }
+
+    /**
+     * @return the sequence number below which every record has been consumed
+     */
+    long get() {
+        return offset;
+    }
+
+    /**
+     * @return the number of sequence numbers from the offset on that can be acknowledged
+     */
+    long window() {
+        return mask + 1;
+    }
+
+    /**
+     * Marks a record as consumed, and moves the offset on if it is the record at the offset.
+     *
+     * @param sequence the sequence number of the record; within the {@link #window()} from the offset
+     */
+    void acknowledge(long sequence) {
+        acknowledged.getAndAccumulate(word(sequence), bit(sequence), (bits, bit) -> bits | bit);
+        // A thread that fails to take the lock leaves its record to the holder, which checks the offset again after
+        // releasing the lock.
+        while (isAcknowledged(offset) && compaction.tryLock()) {
+            try {
+                long current = offset;
+                while (isAcknowledged(current)) {
+                    acknowledged.getAndAccumulate(word(current), bit(current), (bits, bit) -> bits & ~bit);
+                    current++;
+                }
+                offset = current;
+                file.putLong(0, current);
+            } finally {
+                compaction.unlock();
+            }
+        }
+    }
+
+    /**
+     * Forces the offset to the storage device.
+     */
+    void force() {
+        file.force();
+    }
+
+    private boolean isAcknowledged(long sequence) {
+        return (acknowledged.get(word(sequence)) & bit(sequence)) != 0;
+    }
+
+    private int word(long sequence) {
+        return (int) ((sequence & mask) >>> 6);
+    }
+
+    private static long bit(long sequence) {
+        return 1L << sequence;
+    }
+}
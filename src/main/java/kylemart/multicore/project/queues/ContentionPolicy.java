@@ -0,0 +1,90 @@
+package kylemart.multicore.project.queues;
+
+import org.multiverse.api.BackoffPolicy;
+import org.multiverse.api.TxnFactoryBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How the transactions of a {@link TxnQueue} deal with conflicts: how long a transaction waits before it runs again
+ * after an abort, and how often it runs again before it gives up with a
+ * {@link org.multiverse.api.exceptions.TooManyRetriesException}. The policies trade the time an aborted transaction
+ * spends idle against the chance that it conflicts again as soon as it restarts. Other settings, such as read
+ * tracking, keep the defaults of Multiverse.
+ */
+public enum ContentionPolicy {
+
+    /**
+     * The default configuration of Multiverse: a randomized backoff whose delay grows with every retry, yielding for
+     * short delays and parking the thread for longer ones, and at most 1000 retries. This is the configuration the
+     * queues ran with before they could be configured.
+     */
+    DEFAULT {
+        @Override
+        TxnFactoryBuilder configure(TxnFactoryBuilder builder) {
+            return builder;
+        }
+    },
+
+    /**
+     * Runs again right away, spinning once. Lowest latency while conflicts are rare, but under heavy contention aborted
+     * transactions keep restarting into the same conflict. Never gives up.
+     */
+    SPIN {
+        @Override
+        TxnFactoryBuilder configure(TxnFactoryBuilder builder) {
+            return builder.setBackoffPolicy(new BackoffPolicy() {
+                @Override
+                public void delay(int attempt) {
+                    Thread.onSpinWait();
+                }
+
+                @Override
+                public void delayUninterruptible(int attempt) {
+                    Thread.onSpinWait();
+                }
+            }).setMaxRetries(Integer.MAX_VALUE);
+        }
+    },
+
+    /**
+     * Spins for a random number of iterations, up to a limit that doubles with every retry until it reaches
+     * {@link #MAX_SPINS}. Transactions that conflicted with each other restart at different times, and the thread
+     * is never descheduled. Never gives up.
+     */
+    EXPONENTIAL_SPIN {
+        @Override
+        TxnFactoryBuilder configure(TxnFactoryBuilder builder) {
+            return builder.setBackoffPolicy(new BackoffPolicy() {
+                @Override
+                public void delay(int attempt) {
+                    delayUninterruptible(attempt);
+                }
+
+                @Override
+                public void delayUninterruptible(int attempt) {
+                    int limit = MAX_SPINS >>> Math.max(0, MAX_SPIN_SHIFT - attempt);
+                    for (int spins = ThreadLocalRandom.current().nextInt(limit + 1); spins > 0; spins--) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }).setMaxRetries(Integer.MAX_VALUE);
+        }
+    };
+
+    /**
+     * The base-2 logarithm of {@link #MAX_SPINS}.
+     */
+    private static final int MAX_SPIN_SHIFT = 10;
+
+    /**
+     * The most iterations {@link #EXPONENTIAL_SPIN} spins for before a retry.
+     */
+    private static final int MAX_SPINS = 1 << MAX_SPIN_SHIFT;
+
+    /**
+     * @param builder the configuration to change
+     * @return the builder with the backoff and retry settings of this policy
+     */
+    abstract TxnFactoryBuilder configure(TxnFactoryBuilder builder);
+}
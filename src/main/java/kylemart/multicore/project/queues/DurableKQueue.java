@@ -0,0 +1,214 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded {@link KQueue} whose elements survive a restart of the process.
+ *
+ * <p>
+ * Every enqueued element is encoded by a {@link Codec} and appended to a journal of memory-mapped files before it is
+ * enqueued to the in-memory queue; appends are serialized, but encoding is not. Every dequeued element is
+ * acknowledged, and acknowledgements are compacted into a consumer offset, below which every element of the journal
+ * has been dequeued. On construction, the queue recovers every element of the journal from the consumer offset on.
+ * </p>
+ *
+ * <p>
+ * Both the journal and the consumer offset are written to memory-mapped files, so they survive the process as soon as
+ * an operation returns. To also survive the machine, they have to be forced to the storage device. Rather than force
+ * every element, the queue forces the journal once every {@code forceEvery} elements, so that a single call covers
+ * all elements appended since the previous one, and {@link #sync()} forces everything on demand. The consumer offset
+ * is only forced by {@link #sync()}: a lost offset only causes elements to be delivered again.
+ * </p>
+ *
+ * <p>
+ * Delivery is at-least-once: the consumer offset only moves past elements dequeued in journal order, so an element
+ * dequeued ahead of others, as a {@link KQueue} may do, is delivered again after a restart if they were not dequeued
+ * by then. Elements are recovered in journal order.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see KQueue
+ */
+public class DurableKQueue<E> implements ConcurrentQueue<E>, Closeable {
+
+    /**
+     * The size of a journal file, unless specified otherwise.
+     */
+    public static final int DEFAULT_FILE_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * How many elements are appended to the journal between two forces, unless specified otherwise.
+     */
+    public static final int DEFAULT_FORCE_EVERY = 1024;
+
+    private static final String OFFSET_FILE = "consumer.offset";
+
+    private final KQueue<Entry<E>> queue;
+
+    private final Codec<E> codec;
+
+    private final Journal journal;
+
+    private final ConsumerOffset offset;
+
+    /**
+     * Serializes appends to the journal, together with the enqueue of the appended element.
+     */
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private final int forceEvery;
+
+    /**
+     * The number of elements appended since the journal was last forced; guarded by {@link #appendLock}.
+     */
+    private int unforced;
+
+    /**
+     * Instantiates a new DurableKQueue with a specified number of segments and k, whose journal files take
+     * {@link #DEFAULT_FILE_SIZE} bytes and are forced every {@link #DEFAULT_FORCE_EVERY} elements, and recovers the
+     * elements left in the directory.
+     *
+     * @param directory    the directory of the journal; created if it does not exist
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel
+     * @param segmentCount the number of segments
+     * @param codec        encodes and decodes the elements
+     * @throws IOException if the journal cannot be read or written
+     */
+    public DurableKQueue(@NotNull Path directory, int k, int segmentCount, @NotNull Codec<E> codec) throws IOException {
+        this(directory, k, segmentCount, codec, DEFAULT_FILE_SIZE, DEFAULT_FORCE_EVERY);
+    }
+
+    /**
+     * Instantiates a new DurableKQueue with a specified number of segments, k, journal file size and force interval,
+     * and recovers the elements left in the directory.
+     *
+     * @param directory    the directory of the journal; created if it does not exist
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel
+     * @param segmentCount the number of segments
+     * @param codec        encodes and decodes the elements
+     * @param fileSize     the size of a journal file, in bytes; bounds the size of an encoded element
+     * @param forceEvery   the number of elements appended between two forces of the journal; 1 forces every element,
+     *                     0 leaves forcing to {@link #sync()}
+     * @throws IOException if the journal cannot be read or written
+     */
+    public DurableKQueue(@NotNull Path directory, int k, int segmentCount, @NotNull Codec<E> codec, int fileSize,
+                         int forceEvery) throws IOException {
+        this.queue = new KQueue<>(k, segmentCount);
+        this.codec = codec;
+        this.forceEvery = forceEvery;
+        Files.createDirectories(directory);
+        // Elements dequeued but not yet acknowledged occupy no slot, so the window leaves room for them.
+        offset = new ConsumerOffset(directory.resolve(OFFSET_FILE), 2 * k * segmentCount);
+        journal = new Journal(directory, fileSize, offset::get);
+        journal.recover(offset.get(), (sequence, payload) -> {
+            if (!queue.enqueue(new Entry<>(sequence, codec.decode(payload)))) {
+                throw new IllegalStateException("The journal holds more elements than the queue can: " + directory);
+            }
+        });
+    }
+
+    /**
+     * Enqueues the {@code value} to the end of the queue, after appending it to the journal.
+     *
+     * @return <code>true</code> if the value was enqueued; <code>false</code> otherwise
+     * @throws IllegalArgumentException if the codec encodes the value to no bytes at all
+     * @throws UncheckedIOException     if the journal cannot be written
+     */
+    @Override
+    public boolean enqueue(@NotNull E value) {
+        byte[] payload = codec.encode(value);
+        boolean force;
+        appendLock.lock();
+        try {
+            if (journal.nextSequence() - offset.get() >= offset.window()) {
+                return false;
+            }
+            long sequence = journal.append(payload);
+            if (!queue.enqueue(new Entry<>(sequence, value))) {
+                journal.truncate();
+                return false;
+            }
+            force = forceEvery > 0 && ++unforced >= forceEvery;
+            if (force) {
+                unforced = 0;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+        // Forcing outside the lock lets other threads append in the meantime; the next force covers them.
+        if (force) {
+            journal.force();
+        }
+        return true;
+    }
+
+    /**
+     * Removes an element from the front of the queue, and acknowledges it.
+     *
+     * @return the removed element; otherwise <code>null</code> if the queue is empty
+     */
+    @Override
+    public E dequeue() {
+        Entry<E> entry = queue.dequeue();
+        if (entry == null) {
+            return null;
+        }
+        offset.acknowledge(entry.sequence);
+        return entry.element;
+    }
+
+    /**
+     * Forces the journal and the consumer offset to the storage device, so that every element enqueued or dequeued so
+     * far survives the machine.
+     */
+    public void sync() {
+        appendLock.lock();
+        try {
+            unforced = 0;
+            journal.force();
+        } finally {
+            appendLock.unlock();
+        }
+        offset.force();
+    }
+
+    /**
+     * @return the contention counters of the in-memory queue; they only count if {@link QueueMetrics#ENABLED}
+     */
+    public QueueMetrics metrics() {
+        return queue.metrics();
+    }
+
+    /**
+     * Forces the journal and the consumer offset to the storage device. The files stay mapped until the queue is
+     * garbage collected, and the queue must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        sync();
+    }
+
+    /**
+     * An element of the in-memory queue, with the sequence number of its journal record.
+     */
+    private static final class Entry<E> {
+
+        final long sequence;
+
+        final E element;
+
+        Entry(long sequence, E element) {
+            this.sequence = sequence;
+            this.element = element;
+        }
+    }
+}
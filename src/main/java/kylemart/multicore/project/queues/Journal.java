@@ -0,0 +1,268 @@
+package kylemart.multicore.project.queues;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only log of the elements enqueued to a {@link DurableKQueue}, spread over memory-mapped files of a fixed
+ * size.
+ *
+ * <p>
+ * Every record is numbered, in the order of appending, by its sequence number. A record is its length, the CRC-32 of
+ * its payload, and the payload; a record never spans two files, and a file is named after the sequence number of its
+ * first record. A file is mapped as a whole once it is created, so an append is a copy into memory: it survives the
+ * process, but only survives the machine once it has been {@link #force() forced} to the storage device. Once every
+ * record of a file is consumed, the file is deleted.
+ * </p>
+ *
+ * <p>
+ * Only {@link #force()} may be called concurrently; all other methods must be called by one thread at a time.
+ * </p>
+ */
+class Journal {
+
+    /**
+     * Receives the records of the journal on recovery.
+     */
+    interface RecordVisitor {
+
+        /**
+         * @param sequence the sequence number of the record
+         * @param payload  the payload of the record, from its position to its limit
+         */
+        void visit(long sequence, ByteBuffer payload);
+    }
+
+    /**
+     * The length and the checksum of a record.
+     */
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    /**
+     * The length that ends a file before its last bytes, as the next record did not fit into them.
+     */
+    private static final int END_OF_FILE = -1;
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+
+    private final int fileSize;
+
+    /**
+     * The sequence number below which every record has been consumed.
+     */
+    private final LongSupplier consumedOffset;
+
+    /**
+     * The sequence numbers of the first records of the files, oldest first; the last is the tail file.
+     */
+    private final ArrayDeque<Long> firstSequences = new ArrayDeque<>();
+
+    /**
+     * The file that records are appended to.
+     */
+    private volatile MappedByteBuffer tail;
+
+    /**
+     * The sequence number of the next record appended.
+     */
+    private long nextSequence;
+
+    /**
+     * Where the record appended last starts in the tail file.
+     */
+    private int lastRecordStart;
+
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Instantiates a new Journal. It has to be {@link #recover recovered} before it can be appended to.
+     *
+     * @param directory      the directory of the journal files
+     * @param fileSize       the size of a journal file, in bytes
+     * @param consumedOffset supplies the sequence number below which every record has been consumed
+     */
+    Journal(Path directory, int fileSize, LongSupplier consumedOffset) {
+        this.directory = directory;
+        this.fileSize = fileSize;
+        this.consumedOffset = consumedOffset;
+    }
+
+    /**
+     * Reads the journal files in the directory, visits every intact record from the given sequence number on, in
+     * order, and prepares to append after the last of them. A file ends at its first record that is incomplete or
+     * fails its checksum, such as one being written when the process died.
+     *
+     * @param fromSequence the sequence number of the first record to visit; every record below it was consumed
+     * @param visitor      receives the records
+     * @throws IOException if a journal file cannot be read or written
+     */
+    void recover(long fromSequence, RecordVisitor visitor) throws IOException {
+        List<Long> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                found.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(found);
+
+        int end = 0;
+        int length = 0;
+        nextSequence = fromSequence;
+        for (int index = 0; index < found.size(); index++) {
+            long firstSequence = found.get(index);
+            if (index + 1 < found.size() && found.get(index + 1) <= fromSequence) {
+                Files.delete(path(firstSequence));
+                continue;
+            }
+            tail = map(firstSequence);
+            firstSequences.addLast(firstSequence);
+            end = 0;
+            long sequence = firstSequence;
+            while (end + HEADER_BYTES <= fileSize) {
+                length = tail.getInt(end);
+                if (length <= 0 || end + HEADER_BYTES + length > fileSize) {
+                    break;
+                }
+                ByteBuffer payload = slice(tail, end + HEADER_BYTES, length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != tail.getInt(end + Integer.BYTES)) {
+                    break;
+                }
+                if (sequence >= fromSequence) {
+                    visitor.visit(sequence, payload);
+                }
+                end += HEADER_BYTES + length;
+                length = 0;
+                sequence++;
+            }
+            nextSequence = sequence;
+        }
+
+        if (tail == null || nextSequence < fromSequence) {
+            // The records up to the consumed offset were lost with the machine before they were forced; new records
+            // must not reuse their sequence numbers.
+            nextSequence = fromSequence;
+            roll();
+        } else {
+            // Clears what is left of a record that was being written when the process died. Nothing was ever written
+            // after it, as records are only appended.
+            int tornEnd = (int) Math.min(fileSize, (long) end + HEADER_BYTES + Math.max(length, 0));
+            for (int position = end; position < tornEnd; position++) {
+                tail.put(position, (byte) 0);
+            }
+            tail.position(end);
+        }
+    }
+
+    /**
+     * @return the sequence number of the next record appended
+     */
+    long nextSequence() {
+        return nextSequence;
+    }
+
+    /**
+     * Appends a record, moving on to a new file if it does not fit into the tail file.
+     *
+     * @param payload the payload of the record; not empty, as a length of zero marks the end of the records of a file
+     * @return the sequence number of the record
+     * @throws IOException if a new journal file cannot be created
+     */
+    long append(byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("A record cannot be empty");
+        }
+        if (HEADER_BYTES + payload.length > fileSize) {
+            throw new IllegalArgumentException(
+                    "A record of " + payload.length + " bytes exceeds the journal file size of " + fileSize);
+        }
+        if (HEADER_BYTES + payload.length > tail.remaining()) {
+            if (tail.remaining() >= Integer.BYTES) {
+                tail.putInt(tail.position(), END_OF_FILE);
+            }
+            tail.force();
+            roll();
+        }
+
+        checksum.reset();
+        checksum.update(payload);
+        int position = tail.position();
+        lastRecordStart = position;
+        tail.putInt(position + Integer.BYTES, (int) checksum.getValue());
+        tail.position(position + HEADER_BYTES);
+        tail.put(payload);
+        // The length goes last, so that a record is never read back before its payload is complete.
+        tail.putInt(position, payload.length);
+        return nextSequence++;
+    }
+
+    /**
+     * Takes back the record appended last, so that its sequence number is given to the next record appended.
+     */
+    void truncate() {
+        tail.putInt(lastRecordStart, 0);
+        tail.position(lastRecordStart);
+        nextSequence--;
+    }
+
+    /**
+     * Forces the records appended so far to the storage device.
+     */
+    void force() {
+        tail.force();
+    }
+
+    /**
+     * Starts a new tail file at the next sequence number, and deletes the files whose records were all consumed.
+     *
+     * @throws IOException if the file cannot be created or an old file cannot be deleted
+     */
+    private void roll() throws IOException {
+        tail = map(nextSequence);
+        firstSequences.addLast(nextSequence);
+
+        // A file is consumed once the file after it starts at or below the consumed offset.
+        long offset = consumedOffset.getAsLong();
+        while (firstSequences.size() > 1) {
+            long firstSequence = firstSequences.removeFirst();
+            if (firstSequences.getFirst() > offset) {
+                firstSequences.addFirst(firstSequence);
+                break;
+            }
+            Files.delete(path(firstSequence));
+        }
+    }
+
+    private MappedByteBuffer map(long firstSequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(path(firstSequence),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+    }
+
+    private Path path(long firstSequence) {
+        return directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(position).limit(position + length);
+        return slice.slice();
+    }
+}
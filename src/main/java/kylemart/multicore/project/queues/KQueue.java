@@ -2,8 +2,7 @@ package kylemart.multicore.project.queues;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
@@ -22,14 +21,14 @@ import java.util.concurrent.atomic.AtomicReferenceArray;
 public class KQueue<E> implements ConcurrentQueue<E> {
 
     /**
-     * The index of the head segment; this is where dequeue operations occur.
+     * The {@link StampedIndex stamped index} of the head segment; this is where dequeue operations occur.
      */
-    private final AtomicInteger headIndex = new AtomicInteger();
+    private final AtomicLong head = new AtomicLong();
 
     /**
-     * The index of the tail segment; this is where enqueue operations occur.
+     * The {@link StampedIndex stamped index} of the tail segment; this is where enqueue operations occur.
      */
-    private final AtomicInteger tailIndex = new AtomicInteger();
+    private final AtomicLong tail = new AtomicLong();
 
     /**
      * This should be read-only. Each k-segment in this array represents a queryable buffer of atomic references.
@@ -37,28 +36,80 @@ public class KQueue<E> implements ConcurrentQueue<E> {
     private final Segment<E>[] segments;
 
     /**
-     * Instantiates a new KQueue with a specified number of segments and k.
+     * Where a dequeue starts looking for an element in the head segment.
+     */
+    private final ScanPolicy scanPolicy;
+
+    /**
+     * How long {@link #enqueue(Object)} and {@link #dequeue()} wait before they retry after losing a race.
+     */
+    private final BackoffPolicy backoffPolicy;
+
+    /**
+     * Counts contention events; see {@link QueueMetrics#ENABLED}.
+     */
+    private final QueueMetrics metrics = new QueueMetrics();
+
+    /**
+     * The slot index of each value inserted by the current pass of {@link #enqueueAll}, one buffer per thread; a pass
+     * never inserts more values than a segment has slots.
+     */
+    private final ThreadLocal<int[]> slotIndexes;
+
+    /**
+     * Instantiates a new KQueue with a specified number of segments and k, whose dequeue operations scan the head
+     * segment from left to right.
      *
      * @param k            the number of enqueue and dequeue operations that can be performed in parallel
      * @param segmentCount the number of segments
      */
-    @SuppressWarnings("unchecked")
     public KQueue(int k, int segmentCount) {
+        this(k, segmentCount, ScanPolicy.LEFT_TO_RIGHT);
+    }
+
+    /**
+     * Instantiates a new KQueue with a specified number of segments, k, and scan policy.
+     *
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel
+     * @param segmentCount the number of segments
+     * @param scanPolicy   where a dequeue starts looking for an element in the head segment
+     */
+    public KQueue(int k, int segmentCount, @NotNull ScanPolicy scanPolicy) {
+        this(k, segmentCount, scanPolicy, BackoffPolicy.NONE);
+    }
+
+    /**
+     * Instantiates a new KQueue with a specified number of segments, k, scan policy, and backoff policy.
+     *
+     * @param k             the number of enqueue and dequeue operations that can be performed in parallel
+     * @param segmentCount  the number of segments
+     * @param scanPolicy    where a dequeue starts looking for an element in the head segment
+     * @param backoffPolicy how long an enqueue or dequeue waits before it retries after losing a race
+     */
+    @SuppressWarnings("unchecked")
+    public KQueue(int k, int segmentCount, @NotNull ScanPolicy scanPolicy, @NotNull BackoffPolicy backoffPolicy) {
+        this.scanPolicy = scanPolicy;
+        this.backoffPolicy = backoffPolicy;
         segments = (Segment<E>[]) new Segment[segmentCount];
         for (int index = 0; index < segmentCount; index++) {
             segments[index] = new Segment<>(k);
         }
+        slotIndexes = ThreadLocal.withInitial(() -> new int[k]);
     }
 
     @Override
     public boolean enqueue(@NotNull E element) {
+        int attempt = 0;
         while (true) {
-            int oldTailIndex = tailIndex.get();
-            int oldHeadIndex = headIndex.get();
+            long oldTail = tail.get();
+            long oldHead = head.get();
+            int oldTailIndex = StampedIndex.index(oldTail);
+            int oldHeadIndex = StampedIndex.index(oldHead);
             Segment<E> oldTailSegment = segments[oldTailIndex];
             Segment<E> oldHeadSegment = segments[oldHeadIndex];
 
-            if (oldTailIndex != tailIndex.get()) {
+            if (oldTail != tail.get()) {
+                backoffPolicy.backoff(attempt++);
                 continue;
             }
 
@@ -68,51 +119,158 @@ public class KQueue<E> implements ConcurrentQueue<E> {
                     if (committed(oldTailIndex, oldTailSegment, emptySlotIndex, element)) {
                         return true;
                     }
+                    metrics.record(QueueMetrics.Event.INSERTION_UNDONE);
+                } else {
+                    metrics.record(QueueMetrics.Event.ENQUEUE_CAS_FAILURE);
                 }
+                backoffPolicy.backoff(attempt++);
             } else {
                 if (nextSegmentIndex(oldTailIndex) == oldHeadIndex) {
                     if (oldHeadSegment.isOccupied()) {
-                        if (oldHeadIndex == headIndex.get()) {
+                        if (oldHead == head.get()) {
+                            metrics.record(QueueMetrics.Event.FULL);
                             return false;
                         }
                     } else {
-                        advanceHeadIndex(oldHeadIndex);
+                        advanceHead(oldHead);
                     }
                 }
-                advanceTailIndex(oldTailIndex);
+                advanceTail(oldTail);
             }
         }
     }
 
     @Override
     public E dequeue() {
-        Segment.FindResult<E> found = new Segment.FindResult<>();
-
+        int attempt = 0;
         while (true) {
-            int oldTailIndex = tailIndex.get();
-            int oldHeadIndex = headIndex.get();
+            // The head is read first, so that the tail read after it is never behind it.
+            long oldHead = head.get();
+            long oldTail = tail.get();
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            int oldTailIndex = StampedIndex.index(oldTail);
             Segment<E> oldHeadSegment = segments[oldHeadIndex];
 
-            if (oldHeadIndex != headIndex.get()) {
+            if (oldHead != head.get()) {
+                backoffPolicy.backoff(attempt++);
                 continue;
             }
 
-            if (oldHeadSegment.findFirstElement(found)) {
+            int foundIndex = oldHeadSegment.findElement(scanPolicy.start(oldHeadSegment.slots.length()));
+            if (foundIndex >= 0) {
+                E found = oldHeadSegment.slots.get(foundIndex);
                 if (oldTailIndex == oldHeadIndex) {
-                    advanceTailIndex(oldTailIndex);
+                    advanceTail(oldTail);
                 }
-                if (oldHeadSegment.slots.compareAndSet(found.index, found.element, null)) {
-                    return found.element;
+                if (found != null && oldHeadSegment.slots.compareAndSet(foundIndex, found, null)) {
+                    return found;
                 }
+                metrics.record(QueueMetrics.Event.DEQUEUE_CAS_FAILURE);
+                backoffPolicy.backoff(attempt++);
             } else {
-                if (oldTailIndex == oldHeadIndex && oldTailIndex == tailIndex.get()) {
+                if (oldTailIndex == oldHeadIndex && oldTail == tail.get()) {
+                    metrics.record(QueueMetrics.Event.EMPTY);
                     return null;
                 }
-                advanceHeadIndex(oldHeadIndex);
+                advanceHead(oldHead);
             }
         }
     }
 
+    /**
+     * Enqueues {@code length} values, starting at {@code values[offset]}, to the end of the queue. Each pass fills as
+     * many empty slots of the tail segment as it can and validates all of those insertions at once.
+     *
+     * <p>
+     * If insertions have to be undone, the values that did make it into the queue are moved to the front of the
+     * range, so that the first values of the range are always those that were enqueued; the range is reordered in
+     * place, as {@link ConcurrentQueue#enqueueAll} allows.
+     * </p>
+     *
+     * @return the number of values enqueued; fewer than {@code length} only if the queue is full
+     */
+    @Override
+    public int enqueueAll(@NotNull E[] values, int offset, int length) {
+        int[] slotIndexes = this.slotIndexes.get();
+        int enqueued = 0;
+
+        while (enqueued < length) {
+            long oldTail = tail.get();
+            long oldHead = head.get();
+            int oldTailIndex = StampedIndex.index(oldTail);
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            Segment<E> oldTailSegment = segments[oldTailIndex];
+            Segment<E> oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldTail != tail.get()) {
+                continue;
+            }
+
+            int from = offset + enqueued;
+            int inserted = oldTailSegment.fill(values, from, length - enqueued, slotIndexes);
+            if (inserted > 0) {
+                enqueued += committedAll(oldTailIndex, oldTailSegment, values, from, inserted, slotIndexes);
+            } else {
+                if (nextSegmentIndex(oldTailIndex) == oldHeadIndex) {
+                    if (oldHeadSegment.isOccupied()) {
+                        if (oldHead == head.get()) {
+                            metrics.record(QueueMetrics.Event.FULL);
+                            return enqueued;
+                        }
+                    } else {
+                        advanceHead(oldHead);
+                    }
+                }
+                advanceTail(oldTail);
+            }
+        }
+        return enqueued;
+    }
+
+    /**
+     * Removes up to {@code max} elements from the front of the queue and stores them in {@code destination},
+     * starting at index 0. Each pass takes every element it finds in the head segment.
+     */
+    @Override
+    public int drainTo(E[] destination, int max) {
+        int drained = 0;
+
+        while (drained < max) {
+            // The head is read first, so that the tail read after it is never behind it.
+            long oldHead = head.get();
+            long oldTail = tail.get();
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            int oldTailIndex = StampedIndex.index(oldTail);
+            Segment<E> oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldHead != head.get()) {
+                continue;
+            }
+
+            int removed = oldHeadSegment.drainTo(destination, drained, max - drained);
+            if (removed > 0) {
+                if (oldTailIndex == oldHeadIndex) {
+                    advanceTail(oldTail);
+                }
+                drained += removed;
+            } else {
+                if (oldTailIndex == oldHeadIndex && oldTail == tail.get()) {
+                    metrics.record(QueueMetrics.Event.EMPTY);
+                    return drained;
+                }
+                advanceHead(oldHead);
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * @return the contention counters of this queue; they only count if {@link QueueMetrics#ENABLED}
+     */
+    public QueueMetrics metrics() {
+        return metrics;
+    }
+
     /**
      * Validates an insertion. An insertion is valid if the inserted item already got dequeued at validation time by a
      * concurrent operation or it is in the desired range. Tries to undo the insertion if something went wrong.
@@ -125,26 +283,43 @@ public class KQueue<E> implements ConcurrentQueue<E> {
      */
     private boolean committed(int oldTailIndex, Segment<E> oldTailSegment, int slotIndex, E expectedElement) {
         if (oldTailSegment.slots.get(slotIndex) != expectedElement) {
-            return false;
+            return true;
         }
+        return StampedIndex.isInRange(head, tail, oldTailIndex)
+                || !oldTailSegment.slots.compareAndSet(slotIndex, expectedElement, null);
+    }
 
-        int currentHeadIndex = headIndex.get();
-        int currentTailIndex = tailIndex.get();
-
-        boolean isInQueue = (currentHeadIndex < currentTailIndex) ?
-                (currentHeadIndex <= oldTailIndex && oldTailIndex <= currentTailIndex) :
-                (oldTailIndex <= currentTailIndex || currentHeadIndex <= oldTailIndex);
+    /**
+     * Validates a batch of insertions into the same segment. The desired range is checked once for the whole batch;
+     * only if it fails are the insertions undone one by one. Values whose insertion stands are moved to the front of
+     * the batch.
+     *
+     * @param oldTailIndex   the old tail index
+     * @param oldTailSegment the old tail segment
+     * @param values         the inserted values
+     * @param from           the index of the first inserted value
+     * @param count          the number of inserted values
+     * @param slotIndexes    the slot index of each inserted value
+     * @return the number of insertions that stand
+     */
+    private int committedAll(int oldTailIndex, Segment<E> oldTailSegment, E[] values, int from, int count,
+                             int[] slotIndexes) {
+        if (StampedIndex.isInRange(head, tail, oldTailIndex)) {
+            return count;
+        }
 
-        if (isInQueue && oldTailIndex != currentHeadIndex) {
-            return true;
-        } else if (!isInQueue) {
-            return !oldTailSegment.slots.compareAndSet(slotIndex, expectedElement, null);
-        } else {
-            if (currentHeadIndex == headIndex.get()) {
-                return true;
+        int committed = 0;
+        for (int index = 0; index < count; index++) {
+            E value = values[from + index];
+            if (!oldTailSegment.slots.compareAndSet(slotIndexes[index], value, null)) {
+                // Already dequeued by a concurrent operation, so the insertion stands.
+                values[from + index] = values[from + committed];
+                values[from + committed] = value;
+                committed++;
             }
-            return !oldTailSegment.slots.compareAndSet(slotIndex, expectedElement, null);
         }
+        metrics.record(QueueMetrics.Event.INSERTION_UNDONE, count - committed);
+        return committed;
     }
 
     /**
@@ -158,133 +333,24 @@ public class KQueue<E> implements ConcurrentQueue<E> {
     }
 
     /**
-     * Advances the head index to point to the next logical segment, with wrap-around.
-     *
-     * @param oldHeadIndex the old head index
-     */
-    private void advanceHeadIndex(int oldHeadIndex) {
-        headIndex.compareAndSet(oldHeadIndex, nextSegmentIndex(oldHeadIndex));
-    }
-
-    /**
-     * Advances the tail index to point to the next logical segment, with wrap-around.
+     * Advances the head to point to the next logical segment, with wrap-around.
      *
-     * @param oldTailIndex the old tail index
+     * @param oldHead the old stamped head index
      */
-    private void advanceTailIndex(int oldTailIndex) {
-        tailIndex.compareAndSet(oldTailIndex, nextSegmentIndex(oldTailIndex));
+    private void advanceHead(long oldHead) {
+        if (!head.compareAndSet(oldHead, StampedIndex.next(oldHead, nextSegmentIndex(StampedIndex.index(oldHead))))) {
+            metrics.record(QueueMetrics.Event.HEAD_ADVANCE_FAILURE);
+        }
     }
 
     /**
-     * A k-segment is a queryable buffer of atomic references.
+     * Advances the tail to point to the next logical segment, with wrap-around.
      *
-     * @param <E> the type of elements held in this segment
+     * @param oldTail the old stamped tail index
      */
-    private static class Segment<E> {
-
-        /**
-         * Used in methods that require a random slot index to begin traversing from.
-         */
-        static final ThreadLocal<Random> randomReference = new ThreadLocal<>() {
-            @Override
-            protected synchronized Random initialValue() {
-                return new Random();
-            }
-        };
-
-        /**
-         * The slots (atomic references) comprising this k-segment.
-         */
-        final AtomicReferenceArray<E> slots;
-
-        /**
-         * Instantiates a new k-segment with a length of k.
-         *
-         * @param k the length of this k-segment
-         */
-        Segment(int k) {
-            slots = new AtomicReferenceArray<>(k);
-        }
-
-        /**
-         * @return the index of an empty slot; otherwise -1 if no available slots are found.
-         */
-        int getEmptySlotIndex() {
-            // Random used here as an optimization technique.
-            Random random = randomReference.get();
-            int start = random.nextInt(slots.length());
-
-            for (int offset = 0; offset < slots.length(); offset++) {
-                int index = (start + offset) % slots.length();
-                E element = slots.get(index);
-                if (element == null) {
-                    return index;
-                }
-            }
-            return -1;
-        }
-
-        /**
-         * Traverses the slot in left-to-right order and returns the index of the first non-empty element found.
-         *
-         * @return the index of the non-empty slot found; otherwise -1.
-         */
-        boolean findFirstElement(FindResult<E> result) {
-            for (int index = 0; index < slots.length(); index++) {
-                E element = slots.get(index);
-                if (element != null) {
-                    result.set(element, index);
-                    return true;
-                }
-            }
-            return false;
-        }
-
-        /**
-         * @return true if the segment contains at least one element; false otherwise
-         */
-        boolean isOccupied() {
-            // Random used here as an optimization technique.
-            Random random = randomReference.get();
-            int start = random.nextInt(slots.length());
-
-            for (int offset = 0; offset < slots.length(); offset++) {
-                int index = (start + offset) % slots.length();
-                E element = slots.get(index);
-                if (element != null) {
-                    return true;
-                }
-            }
-            return false;
-        }
-
-        /**
-         * Used for storing the result of a find operation.
-         *
-         * @param <E> the type of the element stored within this result
-         */
-        static class FindResult<E> {
-
-            /**
-             * Reference to the element found.
-             */
-            E element;
-
-            /**
-             * The index where the element was found.
-             */
-            int index;
-
-            /**
-             * Sets the properties of this result.
-             *
-             * @param element the element
-             * @param index   the index where the element was found
-             */
-            void set(E element, int index) {
-                this.element = element;
-                this.index = index;
-            }
+    private void advanceTail(long oldTail) {
+        if (!tail.compareAndSet(oldTail, StampedIndex.next(oldTail, nextSegmentIndex(StampedIndex.index(oldTail))))) {
+            metrics.record(QueueMetrics.Event.TAIL_ADVANCE_FAILURE);
         }
     }
 }
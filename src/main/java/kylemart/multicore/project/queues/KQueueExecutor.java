@@ -0,0 +1,230 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An executor with a fixed number of worker threads that take their tasks straight from a {@link KQueue}.
+ *
+ * <p>
+ * A {@link java.util.concurrent.ThreadPoolExecutor} cannot use a {@link BlockingConcurrentQueue} as its work queue,
+ * as it needs to inspect the queue and remove tasks from it. Here, submitting a task is an enqueue, and a worker that
+ * finds no task spins for a while and then parks; a submitted task wakes up one parked worker, if any. Tasks start in
+ * the order of the queue: a task starts after at most k-1 tasks submitted after it.
+ * </p>
+ *
+ * <p>
+ * Once the queue is full, a submitted task runs in the submitting thread, which slows down submitters that outpace
+ * the workers, as {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy} does.
+ * </p>
+ */
+public class KQueueExecutor extends AbstractExecutorService {
+
+    private final KQueue<Runnable> queue;
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * The workers that parked, or are about to, most recent first. May hold workers that are no longer idle, and the
+     * same worker more than once; only the flag of a worker tells whether it is idle.
+     */
+    private final ConcurrentLinkedDeque<Worker> idleWorkers = new ConcurrentLinkedDeque<>();
+
+    private volatile boolean shutdown;
+
+    private final CountDownLatch terminated;
+
+    /**
+     * Instantiates a new KQueueExecutor whose workers are created by {@link Executors#defaultThreadFactory()}.
+     *
+     * @param threadCount  the number of worker threads
+     * @param k            the k of the task queue
+     * @param segmentCount the number of segments of the task queue
+     */
+    public KQueueExecutor(int threadCount, int k, int segmentCount) {
+        this(threadCount, k, segmentCount, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * Instantiates a new KQueueExecutor and starts its workers.
+     *
+     * @param threadCount   the number of worker threads
+     * @param k             the k of the task queue
+     * @param segmentCount  the number of segments of the task queue
+     * @param threadFactory creates the worker threads
+     */
+    public KQueueExecutor(int threadCount, int k, int segmentCount, @NotNull ThreadFactory threadFactory) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("The number of threads must be positive: " + threadCount);
+        }
+        queue = new KQueue<>(k, segmentCount);
+        terminated = new CountDownLatch(threadCount);
+        for (int index = 0; index < threadCount; index++) {
+            Worker worker = new Worker();
+            worker.thread = threadFactory.newThread(worker);
+            workers.add(worker);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public void execute(@NotNull Runnable task) {
+        Objects.requireNonNull(task);
+        if (shutdown) {
+            throw new RejectedExecutionException("The executor is shut down");
+        }
+        if (!queue.enqueue(task)) {
+            task.run();
+            return;
+        }
+        if (shutdown) {
+            // The workers may have checked the queue a last time before the task was enqueued.
+            while ((task = queue.dequeue()) != null) {
+                task.run();
+            }
+            return;
+        }
+        Worker worker;
+        while ((worker = idleWorkers.pollFirst()) != null) {
+            if (worker.idle.compareAndSet(true, false)) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> pending = new ArrayList<>();
+        Runnable task;
+        while ((task = queue.dequeue()) != null) {
+            pending.add(task);
+        }
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * @return the contention counters of the task queue; they only count if {@link QueueMetrics#ENABLED}
+     */
+    public QueueMetrics metrics() {
+        return queue.metrics();
+    }
+
+    /**
+     * A worker thread, which runs tasks until the executor is shut down and the queue is empty.
+     */
+    private final class Worker implements Runnable {
+
+        Thread thread;
+
+        /**
+         * Set by the worker before it parks, and cleared by whichever thread wakes it up, or by the worker itself if it
+         * finds a task first.
+         */
+        final AtomicBoolean idle = new AtomicBoolean();
+
+        @Override
+        public void run() {
+            try {
+                Runnable task;
+                while ((task = take()) != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException | Error e) {
+                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                    }
+                }
+            } finally {
+                terminated.countDown();
+            }
+        }
+
+        /**
+         * @return the next task; <code>null</code> once the executor is shut down and the queue is empty
+         */
+        private Runnable take() {
+            for (int attempt = 0; ; attempt++) {
+                Runnable task = queue.dequeue();
+                if (task != null) {
+                    return task;
+                }
+                if (shutdown) {
+                    // A task enqueued before the shutdown may have been missed by the dequeue above. One enqueued after
+                    // it is run by its submitter.
+                    return queue.dequeue();
+                }
+                if (attempt < WaitStrategy.SPIN_ATTEMPTS) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                task = park();
+                if (task != null) {
+                    return task;
+                }
+                attempt = 0;
+            }
+        }
+
+        /**
+         * Parks until a submitted task or a shutdown wakes the worker up. The worker announces itself as idle before it
+         * checks the queue a last time, so a task submitted meanwhile is either found or wakes it up.
+         *
+         * @return the task found by the last check; <code>null</code> if the worker parked
+         */
+        private Runnable park() {
+            if (idle.compareAndSet(false, true)) {
+                idleWorkers.offerFirst(this);
+            }
+            Runnable task = queue.dequeue();
+            if (task == null && !shutdown) {
+                // A task may have left the interrupt status set, which would keep the worker from parking.
+                Thread.interrupted();
+                LockSupport.park(this);
+            }
+            idle.set(false);
+            return task;
+        }
+    }
+}
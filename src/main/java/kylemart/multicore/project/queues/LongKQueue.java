@@ -0,0 +1,266 @@
+package kylemart.multicore.project.queues;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free queue of {@code long} values.
+ *
+ * <p>
+ * This is a {@link KQueue} whose segments store their elements in a {@code long[]} rather than an array of
+ * references, so values are never boxed. One value, {@link #EMPTY}, is reserved to mark an empty slot; it cannot be
+ * enqueued and is returned by {@link #dequeue()} when the queue is empty. Elements may be dequeued out-of-order up to
+ * k-1, and k enqueue and k dequeue operations can be performed in parallel.
+ * </p>
+ *
+ * <p>
+ * Slots are compared by value rather than by identity, so two equal values enqueued at the same time are
+ * interchangeable; any one of them may be the one that is dequeued first.
+ * </p>
+ *
+ * @see KQueue
+ */
+public class LongKQueue {
+
+    /**
+     * The reserved value that marks an empty slot.
+     */
+    public static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * The {@link StampedIndex stamped index} of the head segment; this is where dequeue operations occur.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The {@link StampedIndex stamped index} of the tail segment; this is where enqueue operations occur.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * This should be read-only. Each k-segment in this array represents a queryable buffer of slots.
+     */
+    private final Segment[] segments;
+
+    /**
+     * Instantiates a new LongKQueue with a specified number of segments and k.
+     *
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel
+     * @param segmentCount the number of segments
+     */
+    public LongKQueue(int k, int segmentCount) {
+        segments = new Segment[segmentCount];
+        for (int index = 0; index < segmentCount; index++) {
+            segments[index] = new Segment(k);
+        }
+    }
+
+    /**
+     * Enqueues the {@code element} to the end of the queue.
+     *
+     * @param element the value to enqueue; must not be {@link #EMPTY}
+     * @return <code>true</code> if the value was enqueued; <code>false</code> if the queue is full
+     * @throws IllegalArgumentException if {@code element} is {@link #EMPTY}
+     */
+    public boolean enqueue(long element) {
+        if (element == EMPTY) {
+            throw new IllegalArgumentException("The reserved EMPTY value cannot be enqueued");
+        }
+
+        while (true) {
+            long oldTail = tail.get();
+            long oldHead = head.get();
+            int oldTailIndex = StampedIndex.index(oldTail);
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            Segment oldTailSegment = segments[oldTailIndex];
+            Segment oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldTail != tail.get()) {
+                continue;
+            }
+
+            int emptySlotIndex = oldTailSegment.getEmptySlotIndex();
+            if (emptySlotIndex >= 0) {
+                if (oldTailSegment.compareAndSet(emptySlotIndex, EMPTY, element)) {
+                    if (committed(oldTailIndex, oldTailSegment, emptySlotIndex, element)) {
+                        return true;
+                    }
+                }
+            } else {
+                if (nextSegmentIndex(oldTailIndex) == oldHeadIndex) {
+                    if (oldHeadSegment.isOccupied()) {
+                        if (oldHead == head.get()) {
+                            return false;
+                        }
+                    } else {
+                        advanceHead(oldHead);
+                    }
+                }
+                advanceTail(oldTail);
+            }
+        }
+    }
+
+    /**
+     * Removes an element from the front of the queue.
+     *
+     * @return the removed value; {@link #EMPTY} if the queue is empty
+     */
+    public long dequeue() {
+        while (true) {
+            // The head is read first, so that the tail read after it is never behind it.
+            long oldHead = head.get();
+            long oldTail = tail.get();
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            int oldTailIndex = StampedIndex.index(oldTail);
+            Segment oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldHead != head.get()) {
+                continue;
+            }
+
+            int foundIndex = oldHeadSegment.findFirstElement();
+            if (foundIndex >= 0) {
+                long found = oldHeadSegment.get(foundIndex);
+                if (oldTailIndex == oldHeadIndex) {
+                    advanceTail(oldTail);
+                }
+                if (found != EMPTY && oldHeadSegment.compareAndSet(foundIndex, found, EMPTY)) {
+                    return found;
+                }
+            } else {
+                if (oldTailIndex == oldHeadIndex && oldTail == tail.get()) {
+                    return EMPTY;
+                }
+                advanceHead(oldHead);
+            }
+        }
+    }
+
+    /**
+     * Validates an insertion. An insertion is valid if the inserted item already got dequeued at validation time by a
+     * concurrent operation or it is in the desired range. Tries to undo the insertion if something went wrong.
+     *
+     * @param oldTailIndex    the old tail index
+     * @param oldTailSegment  the old tail segment
+     * @param slotIndex       the index where the expected element should lie
+     * @param expectedElement the expected element
+     * @return true if successful; false otherwise
+     */
+    private boolean committed(int oldTailIndex, Segment oldTailSegment, int slotIndex, long expectedElement) {
+        if (oldTailSegment.get(slotIndex) != expectedElement) {
+            return true;
+        }
+        return StampedIndex.isInRange(head, tail, oldTailIndex)
+                || !oldTailSegment.compareAndSet(slotIndex, expectedElement, EMPTY);
+    }
+
+    /**
+     * Returns the next logical index, with wrap-around, after the given index.
+     *
+     * @param segmentIndex the index to advance from
+     * @return the next logical index, with wrap-around, after the base index
+     */
+    private int nextSegmentIndex(int segmentIndex) {
+        return (segmentIndex + 1) % segments.length;
+    }
+
+    /**
+     * Advances the head to point to the next logical segment, with wrap-around.
+     *
+     * @param oldHead the old stamped head index
+     */
+    private void advanceHead(long oldHead) {
+        head.compareAndSet(oldHead, StampedIndex.next(oldHead, nextSegmentIndex(StampedIndex.index(oldHead))));
+    }
+
+    /**
+     * Advances the tail to point to the next logical segment, with wrap-around.
+     *
+     * @param oldTail the old stamped tail index
+     */
+    private void advanceTail(long oldTail) {
+        tail.compareAndSet(oldTail, StampedIndex.next(oldTail, nextSegmentIndex(StampedIndex.index(oldTail))));
+    }
+
+    /**
+     * A k-segment is a queryable buffer of {@code long} slots.
+     */
+    private static class Segment {
+
+        /**
+         * Gives volatile and compare-and-set access to the elements of {@link #slots}.
+         */
+        static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        /**
+         * The slots comprising this k-segment; {@link #EMPTY} marks an empty slot.
+         */
+        final long[] slots;
+
+        /**
+         * Instantiates a new k-segment with a length of k.
+         *
+         * @param k the length of this k-segment
+         */
+        Segment(int k) {
+            slots = new long[k];
+            Arrays.fill(slots, EMPTY);
+        }
+
+        long get(int index) {
+            return (long) SLOTS.getVolatile(slots, index);
+        }
+
+        boolean compareAndSet(int index, long expected, long element) {
+            return SLOTS.compareAndSet(slots, index, expected, element);
+        }
+
+        /**
+         * @return the index of an empty slot; otherwise -1 if no available slots are found.
+         */
+        int getEmptySlotIndex() {
+            int start = ThreadLocalRandom.current().nextInt(slots.length);
+
+            for (int offset = 0; offset < slots.length; offset++) {
+                int index = (start + offset) % slots.length;
+                if (get(index) == EMPTY) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Traverses the slot in left-to-right order and returns the index of the first non-empty element found.
+         *
+         * @return the index of the non-empty slot found; otherwise -1.
+         */
+        int findFirstElement() {
+            for (int index = 0; index < slots.length; index++) {
+                if (get(index) != EMPTY) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return true if the segment contains at least one element; false otherwise
+         */
+        boolean isOccupied() {
+            int start = ThreadLocalRandom.current().nextInt(slots.length);
+
+            for (int offset = 0; offset < slots.length; offset++) {
+                int index = (start + offset) % slots.length;
+                if (get(index) != EMPTY) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
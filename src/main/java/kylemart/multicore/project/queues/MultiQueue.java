@@ -0,0 +1,228 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, relaxed concurrent priority queue: {@link #dequeue()} removes one of the smallest elements, not
+ * necessarily the smallest.
+ *
+ * <p>
+ * The queue is a MultiQueue: a number of binary heaps, each guarded by a lock of its own. An enqueue inserts into a
+ * random heap. A dequeue samples two random heaps, compares their smallest elements, which each heap publishes in a
+ * volatile field so that they can be read without locking, and removes the smaller of the two. Operations only ever
+ * lock a single heap at a time. While sampling, they do not wait for a lock: a thread that finds a heap locked, or
+ * full, or empty, samples again. Only after as many failed rounds as there are heaps does an operation fall back to
+ * visiting every heap in turn, and then it waits for each heap's lock, so that its result does not depend on which
+ * heaps happened to be busy. With enough heaps, e.g. two to four per thread, threads rarely meet on the same heap and
+ * seldom reach the fallback.
+ * </p>
+ *
+ * <p>
+ * The relaxation plays the part that k plays in a {@link KQueue}, but its bound is probabilistic. The <em>rank
+ * error</em> of a dequeue is the number of elements in the queue smaller than the one it removes. Sampling two heaps
+ * keeps the heaps balanced, so that the expected rank error is in O(h) and the rank error exceeds O(h log h) only
+ * with small probability, for h heaps, independent of the number of elements. A larger h means less contention and a
+ * larger rank error; with a single heap, the queue is a strict, lock-based priority queue.
+ * </p>
+ *
+ * <p>
+ * {@link #dequeue()} returns <code>null</code> once the fallback found every heap empty, one after the other; an
+ * element inserted into a heap it already visited can be missed. Likewise, {@link #enqueue(Object)} fails once the
+ * fallback found every heap full.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see <a href="https://dl.acm.org/doi/10.1145/2755573.2755616">MultiQueues: Simple Relaxed Concurrent Priority
+ * Queues</a>
+ */
+public class MultiQueue<E> implements ConcurrentQueue<E> {
+
+    private final Heap<E>[] heaps;
+
+    private final Comparator<? super E> comparator;
+
+    /**
+     * Instantiates a new MultiQueue with a specified number of heaps of a specified capacity.
+     *
+     * @param heapCount    the number of heaps
+     * @param heapCapacity the number of elements each heap can hold
+     * @param comparator   the order of the elements; {@link #dequeue()} removes one of the smallest
+     */
+    @SuppressWarnings("unchecked")
+    public MultiQueue(int heapCount, int heapCapacity, @NotNull Comparator<? super E> comparator) {
+        this.comparator = comparator;
+        heaps = (Heap<E>[]) new Heap[heapCount];
+        for (int index = 0; index < heapCount; index++) {
+            heaps[index] = new Heap<>(heapCapacity, comparator);
+        }
+    }
+
+    @Override
+    public boolean enqueue(@NotNull E element) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < heaps.length; attempt++) {
+            Heap<E> heap = heaps[random.nextInt(heaps.length)];
+            if (heap.lock.tryLock()) {
+                try {
+                    if (heap.insert(element)) {
+                        return true;
+                    }
+                } finally {
+                    heap.lock.unlock();
+                }
+            }
+        }
+
+        // The random heaps were busy or full; visit every heap once, waiting for its lock.
+        int start = random.nextInt(heaps.length);
+        for (int offset = 0; offset < heaps.length; offset++) {
+            Heap<E> heap = heaps[(start + offset) % heaps.length];
+            heap.lock.lock();
+            try {
+                if (heap.insert(element)) {
+                    return true;
+                }
+            } finally {
+                heap.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public E dequeue() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < heaps.length; attempt++) {
+            Heap<E> first = heaps[random.nextInt(heaps.length)];
+            Heap<E> second = heaps[random.nextInt(heaps.length)];
+            E firstTop = first.top;
+            E secondTop = second.top;
+            if (firstTop == null && secondTop == null) {
+                continue;
+            }
+
+            Heap<E> heap = secondTop == null || (firstTop != null && comparator.compare(firstTop, secondTop) <= 0) ?
+                    first : second;
+            if (heap.lock.tryLock()) {
+                try {
+                    E element = heap.removeTop();
+                    if (element != null) {
+                        return element;
+                    }
+                } finally {
+                    heap.lock.unlock();
+                }
+            }
+        }
+
+        // The sampled heaps were busy or empty; visit every heap once, waiting for its lock.
+        int start = random.nextInt(heaps.length);
+        for (int offset = 0; offset < heaps.length; offset++) {
+            Heap<E> heap = heaps[(start + offset) % heaps.length];
+            if (heap.top == null) {
+                continue;
+            }
+            heap.lock.lock();
+            try {
+                E element = heap.removeTop();
+                if (element != null) {
+                    return element;
+                }
+            } finally {
+                heap.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A bounded binary min-heap. Only {@link #top} may be read without holding {@link #lock}.
+     *
+     * @param <E> the type of elements held in this heap
+     */
+    private static final class Heap<E> {
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The smallest element of this heap, or <code>null</code> if it is empty; written whenever the heap changes.
+         */
+        volatile E top;
+
+        private final Object[] elements;
+
+        private final Comparator<? super E> comparator;
+
+        private int size;
+
+        Heap(int capacity, Comparator<? super E> comparator) {
+            this.elements = new Object[capacity];
+            this.comparator = comparator;
+        }
+
+        /**
+         * @param element the element to insert
+         * @return true if the element was inserted; false if the heap is full
+         */
+        boolean insert(E element) {
+            if (size == elements.length) {
+                return false;
+            }
+            int index = size++;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                E parentElement = elementAt(parent);
+                if (comparator.compare(element, parentElement) >= 0) {
+                    break;
+                }
+                elements[index] = parentElement;
+                index = parent;
+            }
+            elements[index] = element;
+            if (index == 0) {
+                top = element;
+            }
+            return true;
+        }
+
+        /**
+         * @return the smallest element, which is removed; <code>null</code> if the heap is empty
+         */
+        E removeTop() {
+            if (size == 0) {
+                return null;
+            }
+            E removed = elementAt(0);
+            E last = elementAt(--size);
+            elements[size] = null;
+            if (size > 0) {
+                int index = 0;
+                int half = size >>> 1;
+                while (index < half) {
+                    int child = 2 * index + 1;
+                    E childElement = elementAt(child);
+                    if (child + 1 < size && comparator.compare(elementAt(child + 1), childElement) < 0) {
+                        childElement = elementAt(++child);
+                    }
+                    if (comparator.compare(last, childElement) <= 0) {
+                        break;
+                    }
+                    elements[index] = childElement;
+                    index = child;
+                }
+                elements[index] = last;
+            }
+            top = size > 0 ? elementAt(0) : null;
+            return removed;
+        }
+
+        @SuppressWarnings("unchecked")
+        private E elementAt(int index) {
+            return (E) elements[index];
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package kylemart.multicore.project.queues;
+
+/**
+ * Padding laid out before {@link PaddedCursor#value}, as for {@link PaddedIndex}.
+ */
+abstract class PaddedCursorPadding {
+    long p01, p02, p03, p04, p05, p06, p07, p08;
+}
+
+/**
+ * Holds the value of a {@link PaddedCursor}, between the padding of its super- and subclass.
+ */
+abstract class PaddedCursorValue extends PaddedCursorPadding {
+    int value;
+}
+
+/**
+ * A plain {@code int} that occupies a cache line of its own, for a position that only a single thread reads and
+ * updates, such as where the single producer or consumer of a {@link SpecializedKQueue} left off. Unlike a
+ * {@link PaddedIndex}, it needs no ordering at all; the padding only keeps the producer and consumer from invalidating
+ * each other's cache line on every operation.
+ */
+final class PaddedCursor extends PaddedCursorValue {
+    long p11, p12, p13, p14, p15, p16, p17, p18;
+}
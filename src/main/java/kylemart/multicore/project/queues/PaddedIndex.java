@@ -0,0 +1,69 @@
+package kylemart.multicore.project.queues;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Padding laid out before {@link PaddedIndex#value}. Fields of a superclass are placed before the fields of its
+ * subclasses, which keeps the JVM from reordering the padding around the value.
+ */
+abstract class PaddedIndexPadding {
+    long p01, p02, p03, p04, p05, p06, p07, p08;
+}
+
+/**
+ * Holds the value of a {@link PaddedIndex}, between the padding of its super- and subclass.
+ */
+abstract class PaddedIndexValue extends PaddedIndexPadding {
+    volatile long value;
+}
+
+/**
+ * A {@code long} index that occupies a cache line of its own.
+ *
+ * <p>
+ * Two indices that are updated by different threads, such as the head and tail of a queue, would otherwise likely be
+ * allocated next to each other and invalidate each other's cache line on every update. Reads use acquire semantics
+ * and updates use release semantics, which is all the ordering that the queues built on top of this index need on
+ * their fast paths; {@link #getVolatile()} is available where a full fence is required.
+ * </p>
+ */
+final class PaddedIndex extends PaddedIndexValue {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(PaddedIndexValue.class, "value", long.class);
+        } catch (ReflectiveOperationException exception) {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
+
+    long p11, p12, p13, p14, p15, p16, p17, p18;
+
+    /**
+     * @return the current value, with acquire semantics
+     */
+    long get() {
+        return (long) VALUE.getAcquire(this);
+    }
+
+    /**
+     * @return the current value, with volatile semantics
+     */
+    long getVolatile() {
+        return value;
+    }
+
+    /**
+     * Atomically sets the value to {@code newValue} if it equals {@code expectedValue}, with release semantics.
+     *
+     * @param expectedValue the expected value
+     * @param newValue      the new value
+     * @return true if successful; false otherwise
+     */
+    boolean compareAndSet(long expectedValue, long newValue) {
+        return (long) VALUE.compareAndExchangeRelease(this, expectedValue, newValue) == expectedValue;
+    }
+}
@@ -0,0 +1,307 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue laid out to avoid false sharing.
+ *
+ * <p>
+ * This is a {@link KQueue} with the same k-relaxed semantics, but a memory layout tuned for many threads:
+ * </p>
+ * <ul>
+ * <li>the head and tail indices are each padded onto a cache line of their own, and are read with acquire and
+ * updated with release semantics rather than being fully volatile;</li>
+ * <li>the slots of a segment can be spread out with a stride, so that threads working on neighbouring slots do not
+ * share a cache line;</li>
+ * <li>k and the number of segments are powers of two, so indices wrap around with a mask instead of a division.</li>
+ * </ul>
+ *
+ * <p>
+ * The head and tail count segments rather than wrapping around at the number of segments; the segment a position
+ * refers to is found by masking, and positions are compared by their difference, so they may overflow. As in
+ * {@link KQueue}, each position is {@link StampedIndex stamped} with a version.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see KQueue
+ */
+public class PaddedKQueue<E> implements ConcurrentQueue<E> {
+
+    /**
+     * The stamped position of the head segment; this is where dequeue operations occur.
+     */
+    private final PaddedIndex head = new PaddedIndex();
+
+    /**
+     * The stamped position of the tail segment; this is where enqueue operations occur.
+     */
+    private final PaddedIndex tail = new PaddedIndex();
+
+    /**
+     * This should be read-only. Each k-segment in this array represents a queryable buffer of atomic references.
+     */
+    private final PaddedSegment<E>[] segments;
+
+    /**
+     * Masks an index into {@link #segments}.
+     */
+    private final int segmentMask;
+
+    /**
+     * Instantiates a new PaddedKQueue with a specified number of segments and k, and slots that are not spread out.
+     *
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel; rounded up to
+     *                     a power of two
+     * @param segmentCount the number of segments; rounded up to a power of two
+     */
+    public PaddedKQueue(int k, int segmentCount) {
+        this(k, segmentCount, 1);
+    }
+
+    /**
+     * Instantiates a new PaddedKQueue with a specified number of segments, k, and slot stride.
+     *
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel; rounded up to
+     *                     a power of two
+     * @param segmentCount the number of segments; rounded up to a power of two
+     * @param slotStride   the distance, in array elements, between two neighbouring slots; rounded up to a power of
+     *                     two. A stride of 16 places every slot on a cache line of its own.
+     */
+    @SuppressWarnings("unchecked")
+    public PaddedKQueue(int k, int segmentCount, int slotStride) {
+        int length = ceilingPowerOfTwo(segmentCount);
+        segments = (PaddedSegment<E>[]) new PaddedSegment[length];
+        for (int index = 0; index < length; index++) {
+            segments[index] = new PaddedSegment<>(ceilingPowerOfTwo(k), ceilingPowerOfTwo(slotStride));
+        }
+        segmentMask = length - 1;
+    }
+
+    @Override
+    public boolean enqueue(@NotNull E element) {
+        while (true) {
+            long oldTail = tail.get();
+            long oldHead = head.get();
+            int oldTailPosition = StampedIndex.index(oldTail);
+            int oldHeadPosition = StampedIndex.index(oldHead);
+            PaddedSegment<E> oldTailSegment = segment(oldTailPosition);
+            PaddedSegment<E> oldHeadSegment = segment(oldHeadPosition);
+
+            if (oldTail != tail.get()) {
+                continue;
+            }
+
+            int emptySlotIndex = oldTailSegment.getEmptySlotIndex();
+            if (emptySlotIndex >= 0) {
+                if (oldTailSegment.compareAndSet(emptySlotIndex, null, element)) {
+                    if (committed(oldTailPosition, oldTailSegment, emptySlotIndex, element)) {
+                        return true;
+                    }
+                }
+            } else {
+                if (oldTailPosition - oldHeadPosition == segmentMask) {
+                    if (oldHeadSegment.isOccupied()) {
+                        if (oldHead == head.get()) {
+                            return false;
+                        }
+                    } else {
+                        advanceHead(oldHead);
+                    }
+                }
+                advanceTail(oldTail);
+            }
+        }
+    }
+
+    @Override
+    public E dequeue() {
+        while (true) {
+            // The head is read first, so that the tail read after it is never behind it.
+            long oldHead = head.get();
+            long oldTail = tail.get();
+            int oldHeadPosition = StampedIndex.index(oldHead);
+            int oldTailPosition = StampedIndex.index(oldTail);
+            PaddedSegment<E> oldHeadSegment = segment(oldHeadPosition);
+
+            if (oldHead != head.get()) {
+                continue;
+            }
+
+            int foundIndex = oldHeadSegment.findFirstElement();
+            if (foundIndex >= 0) {
+                E found = oldHeadSegment.get(foundIndex);
+                if (oldTailPosition == oldHeadPosition) {
+                    advanceTail(oldTail);
+                }
+                if (found != null && oldHeadSegment.compareAndSet(foundIndex, found, null)) {
+                    return found;
+                }
+            } else {
+                if (oldTailPosition == oldHeadPosition && oldTail == tail.get()) {
+                    return null;
+                }
+                advanceHead(oldHead);
+            }
+        }
+    }
+
+    /**
+     * Validates an insertion. An insertion is valid if the inserted item already got dequeued at validation time by a
+     * concurrent operation or it is in the desired range. Tries to undo the insertion if something went wrong.
+     *
+     * @param oldTailPosition the old tail position
+     * @param oldTailSegment  the old tail segment
+     * @param slotIndex       the index where the expected element should lie
+     * @param expectedElement the expected element
+     * @return true if successful; false otherwise
+     */
+    private boolean committed(int oldTailPosition, PaddedSegment<E> oldTailSegment, int slotIndex, E expectedElement) {
+        if (oldTailSegment.get(slotIndex) != expectedElement) {
+            return true;
+        }
+
+        // A volatile read, so that it cannot be satisfied before the insertion above became visible.
+        long currentHead = head.getVolatile();
+        int currentHeadPosition = StampedIndex.index(currentHead);
+
+        // The tail never moves backwards, so the old tail segment is still part of the queue exactly when the head
+        // has not moved past it.
+        boolean isInQueue = oldTailPosition - currentHeadPosition >= 0;
+
+        if (isInQueue && oldTailPosition != currentHeadPosition) {
+            return true;
+        } else if (!isInQueue) {
+            return !oldTailSegment.compareAndSet(slotIndex, expectedElement, null);
+        } else {
+            // Keeps the head from moving past this segment, as StampedIndex#isInRange does for a ring of segments.
+            if (head.compareAndSet(currentHead, StampedIndex.nextVersion(currentHead))) {
+                return true;
+            }
+            return !oldTailSegment.compareAndSet(slotIndex, expectedElement, null);
+        }
+    }
+
+    /**
+     * @param position a head or tail position
+     * @return the segment the position refers to
+     */
+    private PaddedSegment<E> segment(int position) {
+        return segments[position & segmentMask];
+    }
+
+    /**
+     * Advances the head to point to the next logical segment.
+     *
+     * @param oldHead the old stamped head position
+     */
+    private void advanceHead(long oldHead) {
+        head.compareAndSet(oldHead, StampedIndex.next(oldHead, StampedIndex.index(oldHead) + 1));
+    }
+
+    /**
+     * Advances the tail to point to the next logical segment.
+     *
+     * @param oldTail the old stamped tail position
+     */
+    private void advanceTail(long oldTail) {
+        tail.compareAndSet(oldTail, StampedIndex.next(oldTail, StampedIndex.index(oldTail) + 1));
+    }
+
+    /**
+     * @param value a positive value
+     * @return the smallest power of two that is greater than or equal to the value
+     */
+    private static int ceilingPowerOfTwo(int value) {
+        return 1 << (Integer.SIZE - Integer.numberOfLeadingZeros(value - 1));
+    }
+
+    /**
+     * A k-segment whose slots may be spread out over a larger array.
+     *
+     * @param <E> the type of elements held in this segment
+     */
+    private static class PaddedSegment<E> {
+
+        /**
+         * The slots (atomic references) comprising this k-segment; slot i is stored at index {@code i << strideShift}.
+         */
+        final AtomicReferenceArray<E> slots;
+
+        /**
+         * Masks an offset into the range of slot indices.
+         */
+        final int slotMask;
+
+        /**
+         * The base-2 logarithm of the slot stride.
+         */
+        final int strideShift;
+
+        /**
+         * Instantiates a new k-segment.
+         *
+         * @param k          the number of slots; a power of two
+         * @param slotStride the distance between two neighbouring slots; a power of two
+         */
+        PaddedSegment(int k, int slotStride) {
+            slots = new AtomicReferenceArray<>(k * slotStride);
+            slotMask = k - 1;
+            strideShift = Integer.numberOfTrailingZeros(slotStride);
+        }
+
+        E get(int slotIndex) {
+            return slots.getAcquire(slotIndex << strideShift);
+        }
+
+        boolean compareAndSet(int slotIndex, E expected, E element) {
+            return slots.compareAndSet(slotIndex << strideShift, expected, element);
+        }
+
+        /**
+         * @return the index of an empty slot; otherwise -1 if no available slots are found.
+         */
+        int getEmptySlotIndex() {
+            int start = ThreadLocalRandom.current().nextInt(slotMask + 1);
+
+            for (int offset = 0; offset <= slotMask; offset++) {
+                int index = (start + offset) & slotMask;
+                if (get(index) == null) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Traverses the slot in left-to-right order and returns the index of the first non-empty element found.
+         *
+         * @return the index of the non-empty slot found; otherwise -1.
+         */
+        int findFirstElement() {
+            for (int index = 0; index <= slotMask; index++) {
+                if (get(index) != null) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * @return true if the segment contains at least one element; false otherwise
+         */
+        boolean isOccupied() {
+            int start = ThreadLocalRandom.current().nextInt(slotMask + 1);
+
+            for (int offset = 0; offset <= slotMask; offset++) {
+                int index = (start + offset) & slotMask;
+                if (get(index) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
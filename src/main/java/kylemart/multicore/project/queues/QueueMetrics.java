@@ -0,0 +1,175 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the events that slow a queue down under contention.
+ *
+ * <p>
+ * Counting is switched on for the whole JVM with the system property {@value #PROPERTY}. {@link #ENABLED} is a
+ * constant, so when counting is off the JIT compiler removes every call to {@link #record(Event)} and the queues run
+ * exactly as without instrumentation. When it is on, every event costs an increment of a {@link LongAdder}, which
+ * spreads concurrent increments over several cells rather than making the counters a new point of contention.
+ * </p>
+ */
+public final class QueueMetrics implements QueueMetricsMXBean {
+
+    /**
+     * The system property that switches counting on.
+     */
+    public static final String PROPERTY = "kylemart.multicore.project.queues.metrics";
+
+    /**
+     * Whether events are counted.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    /**
+     * An event that is counted.
+     */
+    public enum Event {
+        /**
+         * An enqueue lost the race for an empty slot to another thread.
+         */
+        ENQUEUE_CAS_FAILURE,
+        /**
+         * A dequeue lost the race for an element to another thread.
+         */
+        DEQUEUE_CAS_FAILURE,
+        /**
+         * An insertion was undone, as its segment stopped being part of the queue before it could be validated.
+         */
+        INSERTION_UNDONE,
+        /**
+         * An attempt to advance the head lost to another thread.
+         */
+        HEAD_ADVANCE_FAILURE,
+        /**
+         * An attempt to advance the tail lost to another thread.
+         */
+        TAIL_ADVANCE_FAILURE,
+        /**
+         * An enqueue was rejected as the queue was full.
+         */
+        FULL,
+        /**
+         * A dequeue returned nothing as the queue was empty.
+         */
+        EMPTY,
+        /**
+         * A transaction was aborted and run again.
+         */
+        TRANSACTION_RETRY
+    }
+
+    private final LongAdder[] counters = new LongAdder[Event.values().length];
+
+    public QueueMetrics() {
+        for (int index = 0; index < counters.length; index++) {
+            counters[index] = new LongAdder();
+        }
+    }
+
+    /**
+     * Counts an event; a no-op unless {@link #ENABLED}.
+     *
+     * @param event the event that occurred
+     */
+    void record(Event event) {
+        if (ENABLED) {
+            counters[event.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Counts several occurrences of an event; a no-op unless {@link #ENABLED}.
+     *
+     * @param event the event that occurred
+     * @param count the number of occurrences
+     */
+    void record(Event event, int count) {
+        if (ENABLED && count > 0) {
+            counters[event.ordinal()].add(count);
+        }
+    }
+
+    /**
+     * @param event an event
+     * @return the number of times the event was counted since the last {@link #reset()}
+     */
+    public long get(@NotNull Event event) {
+        return counters[event.ordinal()].sum();
+    }
+
+    /**
+     * Reads every counter. Counters are read one after another, so the snapshot is not atomic if events are counted
+     * concurrently.
+     *
+     * @return the count of every event
+     */
+    @NotNull
+    public Map<Event, Long> snapshot() {
+        Map<Event, Long> snapshot = new EnumMap<>(Event.class);
+        for (Event event : Event.values()) {
+            snapshot.put(event, get(event));
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        snapshot().forEach((event, count) -> counters.put(event.name(), count));
+        return Collections.unmodifiableMap(counters);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Registers these counters with the platform MBean server.
+     *
+     * @param name the name the counters are registered under, e.g. the name of the queue they belong to
+     * @return the name of the registered MBean
+     * @throws JMException if the MBean cannot be registered, e.g. as the name is taken
+     */
+    public ObjectName register(@NotNull String name) throws JMException {
+        ObjectName objectName = new ObjectName(getClass().getPackageName() + ":type=QueueMetrics,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Removes an MBean registered by {@link #register(String)}.
+     *
+     * @param objectName the name of the registered MBean
+     * @throws JMException if the MBean cannot be unregistered, e.g. as it is not registered
+     */
+    public static void unregister(@NotNull ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    @Override
+    public String toString() {
+        return getCounters().toString();
+    }
+}
@@ -0,0 +1,24 @@
+package kylemart.multicore.project.queues;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link QueueMetrics}.
+ */
+public interface QueueMetricsMXBean {
+
+    /**
+     * @return the count of every {@link QueueMetrics.Event event}, by name
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return whether events are counted at all
+     */
+    boolean isEnabled();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}
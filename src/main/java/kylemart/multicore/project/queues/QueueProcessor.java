@@ -0,0 +1,113 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A stage of a pipeline that maps the elements of an upstream {@link Flow.Publisher} and publishes the results
+ * through a {@link ConcurrentQueue}, as a {@link QueuePublisher}.
+ *
+ * <p>
+ * The processor requests {@code prefetch} elements upstream once subscribed, and then as many as its subscribers took
+ * out of the queue: there are never more than {@code prefetch} elements on their way into the queue or in it, so
+ * a slow subscriber slows down the upstream publisher rather than overflowing the queue. Requests are batched: a
+ * single request covers all elements taken out while the previous one was being made.
+ * </p>
+ *
+ * <p>
+ * {@code prefetch} should not exceed the number of elements the queue can hold, e.g. {@code k * (segmentCount - 1)}
+ * for a {@link KQueue}, which may refuse elements before all of its slots are occupied. Should the queue still refuse
+ * an element, the element is set aside and delivered once the queue runs empty, so the upstream thread never waits;
+ * the prefetch bounds the number of elements set aside.
+ * </p>
+ *
+ * @param <T> the type of elements received
+ * @param <R> the type of elements published
+ */
+public class QueueProcessor<T, R> extends QueuePublisher<R> implements Flow.Processor<T, R> {
+
+    private final Function<? super T, ? extends R> mapper;
+
+    private final int prefetch;
+
+    private volatile Flow.Subscription upstream;
+
+    /**
+     * The number of elements delivered downstream and not yet requested upstream; the thread that raises it from zero
+     * makes the requests.
+     */
+    private final AtomicLong credit = new AtomicLong();
+
+    /**
+     * Instantiates a new QueueProcessor that delivers elements in batches of {@link #DEFAULT_BATCH_SIZE} on the
+     * {@link #defaultExecutor()}.
+     *
+     * @param queue    the queue that buffers the mapped elements; should not be used other than through this processor
+     * @param prefetch the maximum number of elements requested upstream and not yet delivered downstream
+     * @param mapper   maps every received element to the element published
+     */
+    public QueueProcessor(@NotNull ConcurrentQueue<R> queue, int prefetch,
+                          @NotNull Function<? super T, ? extends R> mapper) {
+        this(queue, defaultExecutor(), DEFAULT_BATCH_SIZE, prefetch, mapper);
+    }
+
+    /**
+     * Instantiates a new QueueProcessor.
+     *
+     * @param queue     the queue that buffers the mapped elements; should not be used other than through this processor
+     * @param executor  runs the subscriptions, which deliver the elements to the subscribers
+     * @param batchSize the maximum number of elements a subscription drains from the queue at once
+     * @param prefetch  the maximum number of elements requested upstream and not yet delivered downstream
+     * @param mapper    maps every received element to the element published
+     */
+    public QueueProcessor(@NotNull ConcurrentQueue<R> queue, @NotNull Executor executor, int batchSize, int prefetch,
+                          @NotNull Function<? super T, ? extends R> mapper) {
+        super(queue, executor, batchSize);
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("The prefetch must be positive: " + prefetch);
+        }
+        this.prefetch = prefetch;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void onSubscribe(@NotNull Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(@NotNull T item) {
+        publish(mapper.apply(item));
+    }
+
+    @Override
+    public void onError(@NotNull Throwable throwable) {
+        closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        close();
+    }
+
+    @Override
+    void delivered(int count) {
+        if (credit.getAndAdd(count) != 0) {
+            return;
+        }
+        long requested = count;
+        do {
+            upstream.request(requested);
+            requested = credit.addAndGet(-requested);
+        } while (requested != 0);
+    }
+}
@@ -0,0 +1,397 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Flow.Publisher} of the elements {@link #offer offered} to a {@link ConcurrentQueue}.
+ *
+ * <p>
+ * Offered elements are enqueued to the queue, and every subscription drains them from it in batches of up to
+ * {@code batchSize} elements, as far as its subscriber's demand allows. A subscription only runs, as a task of the
+ * executor, while its subscriber has demand and the queue has elements, so an idle subscriber takes no thread at all.
+ * Subscribers compete for the elements: each element goes to one subscriber only.
+ * </p>
+ *
+ * <p>
+ * The queue is the buffer between the producers and the subscribers. Once it is full, {@link #offer} fails, which
+ * pushes back on the producers when the subscribers do not keep up, e.g. for a bounded {@link KQueue}. Elements are
+ * delivered in the order they are dequeued from the queue.
+ * </p>
+ *
+ * @param <E> the type of elements published
+ * @see QueueProcessor
+ */
+public class QueuePublisher<E> implements Flow.Publisher<E>, AutoCloseable {
+
+    /**
+     * The number of elements drained from the queue at once, unless specified otherwise.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final ConcurrentQueue<E> queue;
+
+    private final Executor executor;
+
+    private final int batchSize;
+
+    private final CopyOnWriteArrayList<QueueSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Set once no more elements are offered; the subscribers are completed once the queue runs empty.
+     */
+    private volatile boolean closed;
+
+    /**
+     * The error the subscribers are completed with; <code>null</code> if they complete normally.
+     */
+    private volatile Throwable error;
+
+    /**
+     * Elements that do not go through the queue: the element a cancelled subscription held, and the elements a
+     * {@link QueueProcessor} received while the queue refused them. Subscriptions deliver them once the queue runs
+     * empty. Only ever holds a few elements, as there is at most one held element per subscription, and a processor
+     * never has more than its prefetch in flight.
+     */
+    private final ConcurrentLinkedQueue<E> overflow = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of subscriptions that took an element out to check whether there are any left, and have not yet
+     * delivered or set it aside. The subscribers are only completed once there are none, as the element of a cancelled
+     * subscription is set aside for another one.
+     */
+    private final AtomicInteger holders = new AtomicInteger();
+
+    /**
+     * Instantiates a new QueuePublisher that delivers elements in batches of {@link #DEFAULT_BATCH_SIZE} on the
+     * {@link #defaultExecutor()}.
+     *
+     * @param queue the queue that buffers the offered elements; should not be used other than through this publisher,
+     *              as subscribers are not told about elements enqueued to it directly
+     */
+    public QueuePublisher(@NotNull ConcurrentQueue<E> queue) {
+        this(queue, defaultExecutor(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Instantiates a new QueuePublisher.
+     *
+     * @param queue     the queue that buffers the offered elements; should not be used other than through this
+     *                  publisher, as subscribers are not told about elements enqueued to it directly
+     * @param executor  runs the subscriptions, which deliver the elements to the subscribers
+     * @param batchSize the maximum number of elements a subscription drains from the queue at once
+     */
+    public QueuePublisher(@NotNull ConcurrentQueue<E> queue, @NotNull Executor executor, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        this.queue = queue;
+        this.executor = executor;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task if the JDK has virtual threads, and the common
+     * fork-join pool otherwise. Virtual threads are looked up at run time, as the project is compiled for a JDK
+     * without them.
+     *
+     * @return the executor that runs the subscriptions unless specified otherwise
+     */
+    public static Executor defaultExecutor() {
+        return DefaultExecutor.INSTANCE;
+    }
+
+    /**
+     * Enqueues the {@code element} to the queue, to be delivered to a subscriber.
+     *
+     * @param element the element to publish
+     * @return <code>true</code> if the element was enqueued; <code>false</code> if the queue is full
+     * @throws IllegalStateException if the publisher is closed
+     */
+    public boolean offer(@NotNull E element) {
+        Objects.requireNonNull(element);
+        if (closed) {
+            throw new IllegalStateException("The publisher is closed");
+        }
+        if (!queue.enqueue(element)) {
+            return false;
+        }
+        signal();
+        return true;
+    }
+
+    /**
+     * Publishes the {@code element} through the queue, or sets it aside if the queue refuses it, as well as while other
+     * elements are set aside, so that they are delivered in order. Used by a {@link QueueProcessor}, whose prefetch
+     * bounds the number of elements set aside.
+     *
+     * @param element the element to publish
+     * @throws IllegalStateException if the publisher is closed
+     */
+    void publish(E element) {
+        if (overflow.isEmpty() && offer(element)) {
+            return;
+        }
+        overflow.offer(element);
+        signal();
+    }
+
+    /**
+     * Schedules a subscription with demand, to deliver a newly published element.
+     */
+    private void signal() {
+        // Prefers a subscription that is idle, so that the subscribers share the work, but falls back to one that is
+        // running: a running task might just be finishing, and would miss the element unless scheduled again.
+        QueueSubscription running = null;
+        for (QueueSubscription subscription : subscriptions) {
+            if (subscription.demand.get() > 0) {
+                if (subscription.pending.get() == 0) {
+                    subscription.schedule();
+                    return;
+                }
+                if (running == null) {
+                    running = subscription;
+                }
+            }
+        }
+        if (running != null) {
+            running.schedule();
+        }
+    }
+
+    /**
+     * Stops accepting elements; every subscriber is completed once the queue runs empty.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        subscriptions.forEach(QueueSubscription::schedule);
+    }
+
+    /**
+     * Stops accepting elements; every subscriber is completed with the {@code error} once the queue runs empty.
+     *
+     * @param error the error to complete the subscribers with
+     */
+    public void closeExceptionally(@NotNull Throwable error) {
+        this.error = Objects.requireNonNull(error);
+        close();
+    }
+
+    @Override
+    public void subscribe(@NotNull Flow.Subscriber<? super E> subscriber) {
+        QueueSubscription subscription = new QueueSubscription(Objects.requireNonNull(subscriber));
+        subscriptions.add(subscription);
+        subscription.schedule();
+    }
+
+    /**
+     * Called after a subscription delivered elements, i.e. took them out of the queue.
+     *
+     * @param count the number of elements delivered
+     */
+    void delivered(int count) {
+    }
+
+    /**
+     * A subscriber's subscription, which drains the queue on the executor. At most one task of a subscription runs or
+     * is queued at a time, so its subscriber is signalled by one thread at a time.
+     */
+    private final class QueueSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super E> subscriber;
+
+        /**
+         * The number of elements requested and not yet delivered; {@link Long#MAX_VALUE} for an unbounded demand.
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * The number of times the subscription was scheduled since its task last checked for work; the task is only
+         * submitted when this leaves zero.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        /**
+         * An element taken out after the publisher was closed, to check whether there are any left; delivered before
+         * the queue is drained. Only accessed by the task.
+         */
+        private E held;
+
+        /**
+         * Only accessed by the task.
+         */
+        private boolean subscribed;
+
+        private volatile boolean cancelled;
+
+        /**
+         * Set by an invalid request, for the task to signal.
+         */
+        private volatile Throwable requestError;
+
+        /**
+         * Receives the elements drained from the queue. Only accessed by the task.
+         */
+        private final E[] batch;
+
+        @SuppressWarnings("unchecked")
+        QueueSubscription(Flow.Subscriber<? super E> subscriber) {
+            this.subscriber = subscriber;
+            this.batch = (E[]) new Object[batchSize];
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("The requested number of elements must be positive: " + n);
+                schedule();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            // Lets the task return the held element, if any.
+            schedule();
+        }
+
+        void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            while (!cancelled) {
+                if (requestError != null) {
+                    cancel();
+                    giveBack();
+                    subscriber.onError(requestError);
+                    return;
+                }
+                long requested = demand.get();
+                long delivered = 0;
+                if (held != null && requested > 0) {
+                    E element = held;
+                    held = null;
+                    released();
+                    subscriber.onNext(element);
+                    delivered++;
+                }
+                while (delivered < requested && !cancelled) {
+                    int drained = queue.drainTo(batch, (int) Math.min(batchSize, requested - delivered));
+                    if (drained == 0) {
+                        break;
+                    }
+                    QueuePublisher.this.delivered(drained);
+                    for (int index = 0; index < drained; index++) {
+                        E element = batch[index];
+                        batch[index] = null;
+                        subscriber.onNext(element);
+                    }
+                    delivered += drained;
+                }
+                E spilled;
+                while (delivered < requested && !cancelled && (spilled = overflow.poll()) != null) {
+                    QueuePublisher.this.delivered(1);
+                    subscriber.onNext(spilled);
+                    delivered++;
+                }
+                if (delivered > 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-delivered);
+                }
+                if (closed && !cancelled && held == null) {
+                    holders.incrementAndGet();
+                    if ((held = queue.dequeue()) == null) {
+                        held = overflow.poll();
+                    }
+                }
+                // Another subscription may still set its element aside, and reschedule this one when it lets go of it.
+                // The element is set aside before the count drops, so it is seen here once the count is zero.
+                if (closed && !cancelled && held == null && holders.decrementAndGet() == 0 && overflow.isEmpty()) {
+                    cancelled = true;
+                    subscriptions.remove(this);
+                    Throwable failure = error;
+                    if (failure == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(failure);
+                    }
+                    return;
+                }
+                if (held != null && demand.get() > 0) {
+                    continue;
+                }
+                missed = pending.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+            giveBack();
+        }
+
+        /**
+         * Sets the held element, if any, aside for another subscription to deliver. Only called by the task.
+         */
+        private void giveBack() {
+            if (held == null) {
+                return;
+            }
+            overflow.offer(held);
+            held = null;
+            released();
+        }
+
+        /**
+         * Reschedules the other subscriptions once the held element is let go of, as they may be waiting for it to
+         * complete.
+         */
+        private void released() {
+            holders.decrementAndGet();
+            subscriptions.forEach(QueueSubscription::schedule);
+        }
+    }
+
+    /**
+     * Holds the {@link #defaultExecutor()}, created on first use.
+     */
+    private static final class DefaultExecutor {
+
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                return (ExecutorService) MethodHandles.publicLookup()
+                        .findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                                MethodType.methodType(ExecutorService.class))
+                        .invoke();
+            } catch (Throwable e) {
+                // Either the JDK has no virtual threads, or they are a preview feature that is not enabled.
+                return ForkJoinPool.commonPool();
+            }
+        }
+    }
+}
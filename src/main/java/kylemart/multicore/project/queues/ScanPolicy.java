@@ -0,0 +1,59 @@
+package kylemart.multicore.project.queues;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The slot at which a dequeue starts looking for an element in the head segment of a {@link KQueue}. The scan visits
+ * every slot of the segment once, wrapping around at its end.
+ *
+ * <p>
+ * A dequeue only ever takes elements from the head segment, and the head only advances once that segment is empty, so
+ * no policy affects the k-FIFO guarantee: an element is still dequeued within k-1 dequeues of its FIFO position. What
+ * a policy does decide is the order of the elements <em>within</em> a segment and how concurrent dequeues spread over
+ * its slots.
+ * </p>
+ */
+public enum ScanPolicy {
+
+    /**
+     * Every scan starts at the first slot. Concurrent dequeues all compete for the lowest occupied slot, and an element
+     * in a high slot can be overtaken by up to k-1 later insertions into lower slots of the same segment. This is the
+     * original behaviour of the queue.
+     */
+    LEFT_TO_RIGHT {
+        @Override
+        int start(int length) {
+            return 0;
+        }
+    },
+
+    /**
+     * Every scan starts at a random slot, so concurrent dequeues rarely pick the same element. The order within a
+     * segment is arbitrary, but no element can be overtaken by more than k-1 others.
+     */
+    RANDOM {
+        @Override
+        int start(int length) {
+            return ThreadLocalRandom.current().nextInt(length);
+        }
+    },
+
+    /**
+     * Every thread always starts its scans at the same slot, derived from its id. Threads are spread over the slots
+     * without drawing a random number on every dequeue, and a thread keeps working on the same part of a segment, and
+     * so the same cache lines. As with {@link #RANDOM}, no element can be overtaken by more than k-1 others.
+     */
+    STICKY {
+        @Override
+        int start(int length) {
+            long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+            return Math.floorMod((int) (hash >>> 32), length);
+        }
+    };
+
+    /**
+     * @param length the number of slots in a segment
+     * @return the slot index a scan of the calling thread starts at
+     */
+    abstract int start(int length);
+}
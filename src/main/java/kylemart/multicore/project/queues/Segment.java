@@ -0,0 +1,159 @@
+package kylemart.multicore.project.queues;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A k-segment is a queryable buffer of atomic references.
+ *
+ * <p>
+ * Unless told where to start, scans begin at a random slot, which spreads concurrent threads over the slots; the
+ * start is drawn from {@link ThreadLocalRandom}, which neither allocates nor contends.
+ * </p>
+ *
+ * @param <E> the type of elements held in this segment
+ */
+class Segment<E> {
+
+    /**
+     * The slots (atomic references) comprising this k-segment.
+     */
+    final AtomicReferenceArray<E> slots;
+
+    /**
+     * Instantiates a new k-segment with a length of k.
+     *
+     * @param k the length of this k-segment
+     */
+    Segment(int k) {
+        slots = new AtomicReferenceArray<>(k);
+    }
+
+    /**
+     * @return the index of an empty slot; otherwise -1 if no available slots are found.
+     */
+    int getEmptySlotIndex() {
+        return getEmptySlotIndex(slots.length());
+    }
+
+    /**
+     * Searches the first {@code width} slots only.
+     *
+     * @param width the number of slots to search, from the first slot on
+     * @return the index of an empty slot; otherwise -1 if no available slots are found.
+     */
+    int getEmptySlotIndex(int width) {
+        int start = ThreadLocalRandom.current().nextInt(width);
+
+        for (int offset = 0; offset < width; offset++) {
+            int index = (start + offset) % width;
+            E element = slots.get(index);
+            if (element == null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Traverses the slots from the {@code start} index, wrapping around at the end, and returns the index of the first
+     * empty slot found.
+     *
+     * @param start the index of the first slot visited
+     * @return the index of the empty slot found; otherwise -1.
+     */
+    int findEmptySlot(int start) {
+        for (int offset = 0; offset < slots.length(); offset++) {
+            int index = (start + offset) % slots.length();
+            if (slots.get(index) == null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Traverses the slot in left-to-right order and returns the index of the first non-empty element found.
+     *
+     * @return the index of the non-empty slot found; otherwise -1.
+     */
+    int findFirstElement() {
+        return findElement(0);
+    }
+
+    /**
+     * Traverses the slots from the {@code start} index, wrapping around at the end, and returns the index of the first
+     * non-empty element found.
+     *
+     * @param start the index of the first slot visited
+     * @return the index of the non-empty slot found; otherwise -1.
+     */
+    int findElement(int start) {
+        for (int offset = 0; offset < slots.length(); offset++) {
+            int index = (start + offset) % slots.length();
+            if (slots.get(index) != null) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Inserts elements into empty slots, traversing from a random slot index. Stops once {@code count} elements were
+     * inserted or every slot has been visited.
+     *
+     * @param elements    the elements to insert
+     * @param from        the index of the first element to insert
+     * @param count       the maximum number of elements to insert
+     * @param slotIndexes receives the slot index of each inserted element, in insertion order
+     * @return the number of elements inserted; these are the first elements of the given range
+     */
+    int fill(E[] elements, int from, int count, int[] slotIndexes) {
+        int start = ThreadLocalRandom.current().nextInt(slots.length());
+
+        int inserted = 0;
+        for (int offset = 0; offset < slots.length() && inserted < count; offset++) {
+            int index = (start + offset) % slots.length();
+            if (slots.get(index) == null && slots.compareAndSet(index, null, elements[from + inserted])) {
+                slotIndexes[inserted++] = index;
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Traverses the slots in left-to-right order, removing elements until {@code max} elements were removed or every
+     * slot has been visited.
+     *
+     * @param destination the array to store the removed elements in
+     * @param from        the index in {@code destination} to store the first removed element at
+     * @param max         the maximum number of elements to remove
+     * @return the number of elements removed
+     */
+    int drainTo(E[] destination, int from, int max) {
+        int drained = 0;
+        for (int index = 0; index < slots.length() && drained < max; index++) {
+            E element = slots.get(index);
+            if (element != null && slots.compareAndSet(index, element, null)) {
+                destination[from + drained++] = element;
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * @return true if the segment contains at least one element; false otherwise
+     */
+    boolean isOccupied() {
+        int start = ThreadLocalRandom.current().nextInt(slots.length());
+
+        for (int offset = 0; offset < slots.length(); offset++) {
+            int index = (start + offset) % slots.length();
+            E element = slots.get(index);
+            if (element != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,86 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A bounded, lock-free queue made of several {@link KQueue} shards.
+ *
+ * <p>
+ * Every thread has a home shard, derived from its id, so that threads are spread over the shards and most operations
+ * touch a single shard's head and tail. A thread enqueues to its home shard, and only if that is full to the next shard
+ * that is not. It dequeues from its home shard, and only if that is empty steals from the other shards, visiting them
+ * in turn. Finding a shard takes no allocation and no shared state.
+ * </p>
+ *
+ * <p>
+ * The ordering is relaxed further than that of a single {@link KQueue}:
+ * </p>
+ * <ul>
+ * <li>elements that went to the same shard are dequeued out-of-order up to k-1, as in a {@link KQueue};</li>
+ * <li>elements that went to different shards are not ordered at all; an element can be overtaken by any number of
+ * elements enqueued to other shards after it;</li>
+ * <li>so the elements enqueued by one thread keep the k-FIFO order among themselves, as long as its home shard does
+ * not fill up.</li>
+ * </ul>
+ * <p>
+ * {@link #dequeue()} returns <code>null</code> once it found every shard empty, one after the other; an element
+ * enqueued to a shard it already visited can be missed. Likewise, {@link #enqueue(Object)} fails once it found every
+ * shard full.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see KQueue
+ */
+public class ShardedQueue<E> implements ConcurrentQueue<E> {
+
+    private final KQueue<E>[] shards;
+
+    /**
+     * Instantiates a new ShardedQueue with a specified number of shards, each a {@link KQueue} with the specified k
+     * and number of segments.
+     *
+     * @param shardCount   the number of shards
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel on each shard
+     * @param segmentCount the number of segments of each shard
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedQueue(int shardCount, int k, int segmentCount) {
+        shards = (KQueue<E>[]) new KQueue[shardCount];
+        for (int index = 0; index < shardCount; index++) {
+            shards[index] = new KQueue<>(k, segmentCount);
+        }
+    }
+
+    @Override
+    public boolean enqueue(@NotNull E element) {
+        int home = homeShard();
+        for (int offset = 0; offset < shards.length; offset++) {
+            if (shards[(home + offset) % shards.length].enqueue(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public E dequeue() {
+        int home = homeShard();
+        for (int offset = 0; offset < shards.length; offset++) {
+            E element = shards[(home + offset) % shards.length].dequeue();
+            if (element != null) {
+                return element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the calling thread's home shard
+     */
+    private int homeShard() {
+        // Fibonacci hashing: scaling the top bits of the product down to the number of shards spreads threads with
+        // consecutive ids evenly over the shards.
+        long hash = (Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32;
+        return (int) ((hash * shards.length) >>> 32);
+    }
+}
@@ -0,0 +1,302 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free k-FIFO queue for a single producer, a single consumer, or both.
+ *
+ * <p>
+ * This is a {@link KQueue} with the same k-relaxed semantics, which drops the synchronization that only concurrent
+ * producers or concurrent consumers need. The {@link AccessMode} is a promise of the caller: the queue does not check
+ * it, and breaks if more threads than it allows use a side.
+ * </p>
+ *
+ * <p>
+ * With a single producer:
+ * </p>
+ * <ul>
+ * <li>only the producer fills slots, so it writes an element into an empty slot with a plain volatile store rather
+ * than a compare-and-set, and never loses a slot to another thread;</li>
+ * <li>only the producer moves the tail, so it does so with a store, and dequeues leave the tail alone;</li>
+ * <li>the tail segment cannot leave the queue while the producer inserts into it, so an insertion is never undone.
+ * Only an insertion into the head segment still moves the head on to a new version, as in {@link KQueue}, so that a
+ * dequeue that found the segment empty before cannot advance the head past it;</li>
+ * <li>the producer fills a segment from where its previous insertion left off, rather than from a random slot.</li>
+ * </ul>
+ * <p>
+ * With a single consumer, the consumer scans the head segment from where its previous dequeue left off. If there is
+ * also a single producer, no other thread ever empties a slot, so the consumer empties it with an ordered store
+ * rather than a compare-and-set. With several producers, it still needs the compare-and-set, as a producer may undo an
+ * insertion concurrently.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see KQueue
+ * @see AccessMode
+ */
+public class SpecializedKQueue<E> implements ConcurrentQueue<E> {
+
+    /**
+     * The {@link StampedIndex stamped index} of the head segment; this is where dequeue operations occur.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The {@link StampedIndex stamped index} of the tail segment; this is where enqueue operations occur.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * This should be read-only. Each k-segment in this array represents a queryable buffer of atomic references.
+     */
+    private final Segment<E>[] segments;
+
+    private final boolean singleProducer;
+
+    private final boolean singleConsumer;
+
+    /**
+     * The slot at which the single producer starts looking for an empty slot; only accessed by the producer. Padded,
+     * so that it does not share a cache line with the consumer's slot.
+     */
+    private final PaddedCursor producerSlot = new PaddedCursor();
+
+    /**
+     * The slot at which the single consumer starts looking for an element; only accessed by the consumer. Padded, as
+     * is {@link #producerSlot}.
+     */
+    private final PaddedCursor consumerSlot = new PaddedCursor();
+
+    /**
+     * Counts contention events; see {@link QueueMetrics#ENABLED}.
+     */
+    private final QueueMetrics metrics = new QueueMetrics();
+
+    /**
+     * Instantiates a new SpecializedKQueue with a specified number of segments, k, and access mode.
+     *
+     * @param k            the number of enqueue and dequeue operations that can be performed in parallel
+     * @param segmentCount the number of segments
+     * @param accessMode   the number of threads that may use either side
+     */
+    @SuppressWarnings("unchecked")
+    public SpecializedKQueue(int k, int segmentCount, @NotNull AccessMode accessMode) {
+        this.singleProducer = accessMode.singleProducer;
+        this.singleConsumer = accessMode.singleConsumer;
+        segments = (Segment<E>[]) new Segment[segmentCount];
+        for (int index = 0; index < segmentCount; index++) {
+            segments[index] = new Segment<>(k);
+        }
+    }
+
+    @Override
+    public boolean enqueue(@NotNull E element) {
+        return singleProducer ? enqueueSingle(element) : enqueueConcurrent(element);
+    }
+
+    @Override
+    public E dequeue() {
+        while (true) {
+            // The head is read first, so that the tail read after it is never behind it.
+            long oldHead = head.get();
+            long oldTail = tail.get();
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            int oldTailIndex = StampedIndex.index(oldTail);
+            Segment<E> oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldHead != head.get()) {
+                continue;
+            }
+
+            int foundIndex = oldHeadSegment.findElement(singleConsumer ? consumerSlot.value : 0);
+            if (foundIndex >= 0) {
+                E found = oldHeadSegment.slots.get(foundIndex);
+                if (!singleProducer && oldTailIndex == oldHeadIndex) {
+                    advanceTail(oldTail);
+                }
+                if (found == null) {
+                    metrics.record(QueueMetrics.Event.DEQUEUE_CAS_FAILURE);
+                    continue;
+                }
+                if (singleConsumer) {
+                    consumerSlot.value = foundIndex;
+                    if (singleProducer) {
+                        oldHeadSegment.slots.lazySet(foundIndex, null);
+                        return found;
+                    }
+                }
+                if (oldHeadSegment.slots.compareAndSet(foundIndex, found, null)) {
+                    return found;
+                }
+                metrics.record(QueueMetrics.Event.DEQUEUE_CAS_FAILURE);
+            } else {
+                if (oldTailIndex == oldHeadIndex && oldTail == tail.get()) {
+                    metrics.record(QueueMetrics.Event.EMPTY);
+                    return null;
+                }
+                advanceHead(oldHead);
+            }
+        }
+    }
+
+    /**
+     * @return the contention counters of this queue; they only count if {@link QueueMetrics#ENABLED}
+     */
+    public QueueMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Enqueues as the only producer.
+     *
+     * @param element the element to enqueue
+     * @return true if the element was enqueued; false if the queue is full
+     */
+    private boolean enqueueSingle(E element) {
+        while (true) {
+            long oldTail = tail.get();
+            long oldHead = head.get();
+            int oldTailIndex = StampedIndex.index(oldTail);
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            Segment<E> oldTailSegment = segments[oldTailIndex];
+
+            int emptySlotIndex = oldTailSegment.findEmptySlot(producerSlot.value);
+            if (emptySlotIndex >= 0) {
+                // A volatile store, so that the head is only read below once the element can be seen.
+                oldTailSegment.slots.set(emptySlotIndex, element);
+                producerSlot.value = emptySlotIndex + 1;
+                publish(oldTailIndex);
+                return true;
+            }
+
+            if (nextSegmentIndex(oldTailIndex) == oldHeadIndex) {
+                if (segments[oldHeadIndex].isOccupied()) {
+                    if (oldHead == head.get()) {
+                        metrics.record(QueueMetrics.Event.FULL);
+                        return false;
+                    }
+                } else {
+                    advanceHead(oldHead);
+                }
+                continue;
+            }
+            tail.set(StampedIndex.next(oldTail, nextSegmentIndex(oldTailIndex)));
+            producerSlot.value = 0;
+        }
+    }
+
+    /**
+     * Makes an insertion by the only producer into the tail segment stand. The tail segment stays part of the queue,
+     * so this only matters if it is also the head segment: the head is then moved on to a new version, so that a
+     * dequeue that found the segment empty before the insertion fails to advance the head past it.
+     *
+     * @param tailIndex the index of the segment the element was inserted into
+     */
+    private void publish(int tailIndex) {
+        while (true) {
+            long currentHead = head.get();
+            if (StampedIndex.index(currentHead) != tailIndex
+                    || head.compareAndSet(currentHead, StampedIndex.nextVersion(currentHead))) {
+                return;
+            }
+            metrics.record(QueueMetrics.Event.HEAD_ADVANCE_FAILURE);
+        }
+    }
+
+    /**
+     * Enqueues as one of several producers, exactly as {@link KQueue#enqueue(Object)}.
+     *
+     * @param element the element to enqueue
+     * @return true if the element was enqueued; false if the queue is full
+     */
+    private boolean enqueueConcurrent(E element) {
+        while (true) {
+            long oldTail = tail.get();
+            long oldHead = head.get();
+            int oldTailIndex = StampedIndex.index(oldTail);
+            int oldHeadIndex = StampedIndex.index(oldHead);
+            Segment<E> oldTailSegment = segments[oldTailIndex];
+            Segment<E> oldHeadSegment = segments[oldHeadIndex];
+
+            if (oldTail != tail.get()) {
+                continue;
+            }
+
+            int emptySlotIndex = oldTailSegment.getEmptySlotIndex();
+            if (emptySlotIndex >= 0) {
+                if (oldTailSegment.slots.compareAndSet(emptySlotIndex, null, element)) {
+                    if (committed(oldTailIndex, oldTailSegment, emptySlotIndex, element)) {
+                        return true;
+                    }
+                    metrics.record(QueueMetrics.Event.INSERTION_UNDONE);
+                } else {
+                    metrics.record(QueueMetrics.Event.ENQUEUE_CAS_FAILURE);
+                }
+            } else {
+                if (nextSegmentIndex(oldTailIndex) == oldHeadIndex) {
+                    if (oldHeadSegment.isOccupied()) {
+                        if (oldHead == head.get()) {
+                            metrics.record(QueueMetrics.Event.FULL);
+                            return false;
+                        }
+                    } else {
+                        advanceHead(oldHead);
+                    }
+                }
+                advanceTail(oldTail);
+            }
+        }
+    }
+
+    /**
+     * Validates an insertion by one of several producers, as {@link KQueue} does.
+     *
+     * @param oldTailIndex    the old tail index
+     * @param oldTailSegment  the old tail segment
+     * @param slotIndex       the index where the expected element should lie
+     * @param expectedElement the expected element
+     * @return true if successful; false otherwise
+     */
+    private boolean committed(int oldTailIndex, Segment<E> oldTailSegment, int slotIndex, E expectedElement) {
+        if (oldTailSegment.slots.get(slotIndex) != expectedElement) {
+            return true;
+        }
+
+        return StampedIndex.isInRange(head, tail, oldTailIndex)
+                || !oldTailSegment.slots.compareAndSet(slotIndex, expectedElement, null);
+    }
+
+    /**
+     * Returns the next logical index, with wrap-around, after the given index.
+     *
+     * @param segmentIndex the index to advance from
+     * @return the next logical index, with wrap-around, after the base index
+     */
+    private int nextSegmentIndex(int segmentIndex) {
+        return (segmentIndex + 1) % segments.length;
+    }
+
+    /**
+     * Advances the head to point to the next logical segment, with wrap-around.
+     *
+     * @param oldHead the old stamped head index
+     */
+    private void advanceHead(long oldHead) {
+        if (!head.compareAndSet(oldHead, StampedIndex.next(oldHead, nextSegmentIndex(StampedIndex.index(oldHead))))) {
+            metrics.record(QueueMetrics.Event.HEAD_ADVANCE_FAILURE);
+        }
+    }
+
+    /**
+     * Advances the tail to point to the next logical segment, with wrap-around. Only used with several producers.
+     *
+     * @param oldTail the old stamped tail index
+     */
+    private void advanceTail(long oldTail) {
+        if (!tail.compareAndSet(oldTail, StampedIndex.next(oldTail, nextSegmentIndex(StampedIndex.index(oldTail))))) {
+            metrics.record(QueueMetrics.Event.TAIL_ADVANCE_FAILURE);
+        }
+    }
+}
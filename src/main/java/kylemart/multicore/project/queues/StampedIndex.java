@@ -0,0 +1,70 @@
+package kylemart.multicore.project.queues;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helpers for a segment index stamped with a version, packed into a {@code long}.
+ *
+ * <p>
+ * The low 32 bits hold the index and the high 32 bits hold the version. Every update of a stamped index moves on to
+ * the next version, so a compare-and-set against a value that was read before an update fails even if the index
+ * itself has come back to the same value, e.g. after the queue wrapped around. {@link #isInRange} relies on this to
+ * validate an insertion into the head segment.
+ * </p>
+ */
+final class StampedIndex {
+
+    private StampedIndex() {
+    }
+
+    /**
+     * @param stamped a stamped index
+     * @return the index held by the stamped index
+     */
+    static int index(long stamped) {
+        return (int) stamped;
+    }
+
+    /**
+     * @param stamped a stamped index
+     * @param index   the new index
+     * @return a stamped index holding {@code index}, with the version following that of {@code stamped}
+     */
+    static long next(long stamped, int index) {
+        return (((stamped >>> 32) + 1) << 32) | (index & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param stamped a stamped index
+     * @return a stamped index holding the same index, with the version following that of {@code stamped}
+     */
+    static long nextVersion(long stamped) {
+        return stamped + (1L << 32);
+    }
+
+    /**
+     * Checks whether an insertion into a segment of a ring of segments lies in the desired range, i.e. the segment is
+     * still part of the queue and, if it is the head segment, the head can be kept from moving past it. The head is
+     * kept there by moving it on to a new version, which makes a concurrent dequeue that found the segment empty before
+     * the insertion fail to advance the head past it, and re-examine the segment.
+     *
+     * @param head         the stamped index of the head segment
+     * @param tail         the stamped index of the tail segment
+     * @param segmentIndex the index of the segment the element was inserted into
+     * @return true if the insertion is in the desired range; false if it has to be undone
+     */
+    static boolean isInRange(AtomicLong head, AtomicLong tail, int segmentIndex) {
+        long currentHead = head.get();
+        int currentHeadIndex = index(currentHead);
+        int currentTailIndex = index(tail.get());
+
+        boolean isInQueue = (currentHeadIndex <= currentTailIndex) ?
+                (currentHeadIndex <= segmentIndex && segmentIndex <= currentTailIndex) :
+                (segmentIndex <= currentTailIndex || currentHeadIndex <= segmentIndex);
+
+        if (!isInQueue) {
+            return false;
+        }
+        return segmentIndex != currentHeadIndex || head.compareAndSet(currentHead, nextVersion(currentHead));
+    }
+}
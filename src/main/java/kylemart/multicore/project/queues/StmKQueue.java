@@ -0,0 +1,190 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+import org.multiverse.api.Stm;
+import org.multiverse.api.Txn;
+import org.multiverse.api.references.TxnLong;
+import org.multiverse.api.references.TxnRef;
+import org.multiverse.api.references.TxnRefFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.multiverse.api.GlobalStmInstance.getGlobalStmInstance;
+import static org.multiverse.api.TxnThreadLocal.clearThreadLocalTxn;
+
+/**
+ * A bounded software transactional memory k-FIFO queue.
+ *
+ * <p>
+ * The queue has the layout of a {@link KQueue}, a ring of segments of k slots, made of transactional references: an
+ * enqueue puts its element into any empty slot of the tail segment and a dequeue takes any element of the head
+ * segment, so elements may be dequeued out-of-order up to k-1, as from a {@link KQueue}. Both look at the slots of
+ * their segment from a random slot on and stop at the first that fits, so the transactions of concurrent operations
+ * usually read and write different slots and do not conflict. The head and the tail are only written when a segment
+ * runs full or empty, and an enqueue only reads the head, or a dequeue the tail, when the ring may be full or empty.
+ * </p>
+ *
+ * <p>
+ * Unlike {@link KQueue}, the queue needs no validation of its insertions: a dequeue that finds the head segment
+ * empty, and moves the head on, has read every slot of it, so a concurrent insertion into that segment aborts one of
+ * the two transactions. Its operations can be composed into larger transactions; see {@link TxnQueue}.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see KQueue
+ */
+public class StmKQueue<E> implements TxnQueue<E> {
+
+    /**
+     * The slots of all segments, one segment after the other; <code>null</code> marks an empty slot.
+     */
+    private final TxnRef<E>[] slots;
+
+    private final int k;
+
+    private final int segmentCount;
+
+    /**
+     * The number of times the head moved on; the head segment is at this count modulo the number of segments.
+     */
+    private final TxnLong head;
+
+    /**
+     * The number of times the tail moved on; the tail segment is at this count modulo the number of segments. Never
+     * behind the head.
+     */
+    private final TxnLong tail;
+
+    /**
+     * Counts contention events; see {@link QueueMetrics#ENABLED}.
+     */
+    private final QueueMetrics metrics = new QueueMetrics();
+
+    /**
+     * Runs {@link #enqueue(Object)} and {@link #dequeue()} in transactions of their own.
+     */
+    private final TxnOperations<E> operations;
+
+    /**
+     * Instantiates a new StmKQueue with a specified number of segments and k, whose transactions run with the default
+     * configuration of Multiverse.
+     *
+     * @param k            the number of slots per segment
+     * @param segmentCount the number of segments
+     */
+    public StmKQueue(int k, int segmentCount) {
+        this(k, segmentCount, ContentionPolicy.DEFAULT);
+    }
+
+    /**
+     * Instantiates a new StmKQueue with a specified number of segments and k.
+     *
+     * @param k                the number of slots per segment
+     * @param segmentCount     the number of segments
+     * @param contentionPolicy how the transactions of single-element operations deal with conflicts
+     */
+    @SuppressWarnings("unchecked")
+    public StmKQueue(int k, int segmentCount, @NotNull ContentionPolicy contentionPolicy) {
+        this.k = k;
+        this.segmentCount = segmentCount;
+        Stm stm = getGlobalStmInstance();
+        clearThreadLocalTxn();
+        TxnRefFactory refFactory = stm.getDefaultRefFactory();
+        slots = (TxnRef<E>[]) new TxnRef[k * segmentCount];
+        for (int index = 0; index < slots.length; index++) {
+            slots[index] = refFactory.newTxnRef(null);
+        }
+        head = refFactory.newTxnLong(0);
+        tail = refFactory.newTxnLong(0);
+        operations = new TxnOperations<>(this, stm, contentionPolicy, metrics);
+    }
+
+    @Override
+    public boolean enqueue(E value) {
+        return operations.enqueue(value);
+    }
+
+    @Override
+    public E dequeue() {
+        return operations.dequeue();
+    }
+
+    @Override
+    public boolean enqueue(@NotNull Txn txn, @NotNull E value) {
+        while (true) {
+            long tailCount = tail.get(txn);
+            int slotIndex = findSlot(txn, tailCount, true);
+            if (slotIndex >= 0) {
+                slots[slotIndex].set(txn, value);
+                return true;
+            }
+            if (isLastSegment(txn, tailCount)) {
+                long headCount = tailCount + 1 - segmentCount;
+                if (findSlot(txn, headCount, false) >= 0) {
+                    return false;
+                }
+                head.set(txn, headCount + 1);
+            }
+            tail.set(txn, tailCount + 1);
+        }
+    }
+
+    @Override
+    public E dequeue(@NotNull Txn txn) {
+        while (true) {
+            long headCount = head.get(txn);
+            int slotIndex = findSlot(txn, headCount, false);
+            if (slotIndex >= 0) {
+                return slots[slotIndex].getAndSet(txn, null);
+            }
+            if (headCount == tail.get(txn)) {
+                return null;
+            }
+            head.set(txn, headCount + 1);
+        }
+    }
+
+    @Override
+    public boolean isFull(@NotNull Txn txn) {
+        long tailCount = tail.get(txn);
+        return findSlot(txn, tailCount, true) < 0 && isLastSegment(txn, tailCount)
+                && findSlot(txn, tailCount + 1 - segmentCount, false) >= 0;
+    }
+
+    /**
+     * @return the contention counters of this queue; they only count if {@link QueueMetrics#ENABLED}
+     */
+    public QueueMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Looks at the slots of a segment from a random slot on, wrapping around at its end, and stops at the first slot
+     * that is empty or occupied, as asked for.
+     *
+     * @param txn   the running transaction
+     * @param count the head or tail count that points at the segment
+     * @param empty whether to look for an empty slot rather than an occupied one
+     * @return the index of the slot found; otherwise -1
+     */
+    private int findSlot(Txn txn, long count, boolean empty) {
+        int first = (int) (count % segmentCount) * k;
+        int start = ThreadLocalRandom.current().nextInt(k);
+        for (int offset = 0; offset < k; offset++) {
+            int index = first + (start + offset) % k;
+            if (slots[index].isNull(txn) == empty) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param txn       the running transaction
+     * @param tailCount the tail count
+     * @return true if the segment after the tail segment is the head segment; false otherwise
+     */
+    private boolean isLastSegment(Txn txn, long tailCount) {
+        return tailCount + 1 - head.get(txn) == segmentCount;
+    }
+}
@@ -1,17 +1,13 @@
 package kylemart.multicore.project.queues;
 
+import org.jetbrains.annotations.NotNull;
 import org.multiverse.api.Stm;
-import org.multiverse.api.StmUtils;
 import org.multiverse.api.Txn;
-import org.multiverse.api.callables.TxnBooleanCallable;
-import org.multiverse.api.callables.TxnCallable;
 import org.multiverse.collections.NaiveTxnLinkedList;
 
 import static org.multiverse.api.GlobalStmInstance.getGlobalStmInstance;
 import static org.multiverse.api.TxnThreadLocal.clearThreadLocalTxn;
 
-import java.util.NoSuchElementException;
-
 /**
  * A bounded, lock-free transitional memory queue
  *
@@ -20,10 +16,14 @@ import java.util.NoSuchElementException;
  * transactional memory using the Multiverse Software Transactional Memory library.
  * </p>
  *
+ * <p>
+ * Its operations can be composed into larger transactions; see {@link TxnQueue}.
+ * </p>
+ *
  * @param <I> The type of elements held in this queue
  * @author Daquaris Chadwick
  */
-public class StmQueue<I> implements ConcurrentQueue<I> {
+public class StmQueue<I> implements TxnQueue<I> {
 
     /**
      * The structure that is representing the queue
@@ -36,43 +36,67 @@ public class StmQueue<I> implements ConcurrentQueue<I> {
     private Stm stm;
 
     /**
-     * Instantiates a new STMQueue holding at most capacity
+     * Counts contention events; see {@link QueueMetrics#ENABLED}.
+     */
+    private final QueueMetrics metrics = new QueueMetrics();
+
+    /**
+     * Runs {@link #enqueue(Object)} and {@link #dequeue()} in transactions of their own.
+     */
+    private final TxnOperations<I> operations;
+
+    /**
+     * Instantiates a new STMQueue holding at most capacity, whose transactions run with the default configuration of
+     * Multiverse
      *
      * @param capacity The maximum members the queue can hold
      */
     public StmQueue(int capacity) {
+        this(capacity, ContentionPolicy.DEFAULT);
+    }
+
+    /**
+     * Instantiates a new STMQueue holding at most capacity
+     *
+     * @param capacity         The maximum members the queue can hold
+     * @param contentionPolicy How the transactions of single-element operations deal with conflicts
+     */
+    public StmQueue(int capacity, @NotNull ContentionPolicy contentionPolicy) {
         this.stm = getGlobalStmInstance();
         clearThreadLocalTxn();
         this.transactionalLinkedList = new NaiveTxnLinkedList<I>(this.stm, capacity);
+        this.operations = new TxnOperations<>(this, this.stm, contentionPolicy, metrics);
     }
 
     @Override
     public boolean enqueue(I value) {
-        return StmUtils.atomic(new TxnBooleanCallable() {
-            @Override
-            public boolean call(Txn txn) throws Exception {
-                try {
-                    transactionalLinkedList.addLast(txn, value);
-                    return true;
-
-                } catch (IllegalStateException expected) {
-                    return false;
-                }
-            }
-        });
+        return operations.enqueue(value);
     }
 
     @Override
     public I dequeue() {
-        return StmUtils.atomic(new TxnCallable<I>() {
-            @Override
-            public I call(Txn txn) throws Exception {
-                try {
-                    return transactionalLinkedList.removeFirst(txn);
-                } catch (NoSuchElementException exception) {
-                    return null;
-                }
-            }
-        });
+        return operations.dequeue();
+    }
+
+    @Override
+    public boolean enqueue(@NotNull Txn txn, @NotNull I value) {
+        return transactionalLinkedList.offerLast(txn, value);
+    }
+
+    @Override
+    public I dequeue(@NotNull Txn txn) {
+        return transactionalLinkedList.pollFirst(txn);
+    }
+
+    @Override
+    public boolean isFull(@NotNull Txn txn) {
+        return transactionalLinkedList.size(txn) >= transactionalLinkedList.getCapacity();
+    }
+
+    /**
+     * @return the contention counters of this queue; they only count if {@link QueueMetrics#ENABLED}
+     */
+    public QueueMetrics metrics() {
+        return metrics;
     }
 }
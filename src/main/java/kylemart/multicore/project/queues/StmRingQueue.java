@@ -0,0 +1,147 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+import org.multiverse.api.Stm;
+import org.multiverse.api.Txn;
+import org.multiverse.api.references.TxnLong;
+import org.multiverse.api.references.TxnRef;
+import org.multiverse.api.references.TxnRefFactory;
+
+import java.util.Objects;
+
+import static org.multiverse.api.GlobalStmInstance.getGlobalStmInstance;
+import static org.multiverse.api.TxnThreadLocal.clearThreadLocalTxn;
+
+/**
+ * A bounded software transactional memory queue backed by a ring of transactional references.
+ *
+ * <p>
+ * Unlike {@link StmQueue}, which keeps a shared size that every enqueue and every dequeue writes, this queue keeps a
+ * head and a tail counter of its own for either side. An enqueue reads and writes only the tail and the slot it
+ * points at; a dequeue only the head and the slot it points at. A slot is empty exactly when it holds
+ * <code>null</code>, so an enqueue finds the queue full, and a dequeue finds it empty, by looking at its slot alone.
+ * The transactions of enqueues and dequeues therefore touch disjoint references, and do not conflict, unless the head
+ * and the tail point at the same slot, i.e. the queue is empty or full. Concurrent enqueues still conflict with one
+ * another on the tail, as do concurrent dequeues on the head.
+ * </p>
+ *
+ * <p>
+ * Its operations can be composed into larger transactions; see {@link TxnQueue}.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public class StmRingQueue<E> implements TxnQueue<E> {
+
+    /**
+     * The slots of the ring; <code>null</code> marks an empty slot.
+     */
+    private final TxnRef<E>[] slots;
+
+    /**
+     * The number of elements ever dequeued; the head slot is at this count modulo the capacity.
+     */
+    private final TxnLong head;
+
+    /**
+     * The number of elements ever enqueued; the tail slot is at this count modulo the capacity.
+     */
+    private final TxnLong tail;
+
+    /**
+     * Counts contention events; see {@link QueueMetrics#ENABLED}.
+     */
+    private final QueueMetrics metrics = new QueueMetrics();
+
+    /**
+     * Runs {@link #enqueue(Object)} and {@link #dequeue()} in transactions of their own.
+     */
+    private final TxnOperations<E> operations;
+
+    /**
+     * Instantiates a new StmRingQueue holding at most capacity elements, whose transactions run with the default
+     * configuration of Multiverse.
+     *
+     * @param capacity the maximum number of elements the queue can hold
+     */
+    public StmRingQueue(int capacity) {
+        this(capacity, ContentionPolicy.DEFAULT);
+    }
+
+    /**
+     * Instantiates a new StmRingQueue holding at most capacity elements.
+     *
+     * @param capacity         the maximum number of elements the queue can hold
+     * @param contentionPolicy how the transactions of single-element operations deal with conflicts
+     */
+    @SuppressWarnings("unchecked")
+    public StmRingQueue(int capacity, @NotNull ContentionPolicy contentionPolicy) {
+        Stm stm = getGlobalStmInstance();
+        clearThreadLocalTxn();
+        TxnRefFactory refFactory = stm.getDefaultRefFactory();
+        slots = (TxnRef<E>[]) new TxnRef[capacity];
+        for (int index = 0; index < capacity; index++) {
+            slots[index] = refFactory.newTxnRef(null);
+        }
+        head = refFactory.newTxnLong(0);
+        tail = refFactory.newTxnLong(0);
+        operations = new TxnOperations<>(this, stm, contentionPolicy, metrics);
+    }
+
+    @Override
+    public boolean enqueue(E value) {
+        return operations.enqueue(value);
+    }
+
+    @Override
+    public E dequeue() {
+        return operations.dequeue();
+    }
+
+    @Override
+    public boolean enqueue(@NotNull Txn txn, @NotNull E value) {
+        // A null slot marks the ring as empty at that point, so a null value would hide every element behind it.
+        Objects.requireNonNull(value);
+        long tailCount = tail.get(txn);
+        TxnRef<E> slot = slots[slotIndex(tailCount)];
+        if (!slot.isNull(txn)) {
+            return false;
+        }
+        slot.set(txn, value);
+        tail.set(txn, tailCount + 1);
+        return true;
+    }
+
+    @Override
+    public E dequeue(@NotNull Txn txn) {
+        long headCount = head.get(txn);
+        TxnRef<E> slot = slots[slotIndex(headCount)];
+        E found = slot.get(txn);
+        if (found == null) {
+            return null;
+        }
+        slot.set(txn, null);
+        head.set(txn, headCount + 1);
+        return found;
+    }
+
+    @Override
+    public boolean isFull(@NotNull Txn txn) {
+        return !slots[slotIndex(tail.get(txn))].isNull(txn);
+    }
+
+    /**
+     * @return the contention counters of this queue; they only count if {@link QueueMetrics#ENABLED}
+     */
+    public QueueMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * @param count a head or tail count
+     * @return the index of the slot the count points at
+     */
+    private int slotIndex(long count) {
+        return (int) (count % slots.length);
+    }
+}
@@ -0,0 +1,119 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+import org.multiverse.api.Stm;
+import org.multiverse.api.Txn;
+import org.multiverse.api.TxnExecutor;
+import org.multiverse.api.callables.TxnBooleanCallable;
+import org.multiverse.api.callables.TxnCallable;
+
+/**
+ * Runs the single-element operations of a {@link TxnQueue} each in a transaction of its own.
+ *
+ * <p>
+ * The {@link TxnExecutor} is built once, with a {@link ContentionPolicy}, and so are the callables it runs: the
+ * dequeue callable is shared, and every thread has an enqueue callable of its own that the value to enqueue is
+ * handed to through a field. Running an operation allocates nothing on behalf of the queue.
+ * </p>
+ *
+ * @param <E> the type of elements held in the queue
+ */
+final class TxnOperations<E> {
+
+    private final TxnExecutor executor;
+
+    private final ThreadLocal<Enqueue<E>> enqueues;
+
+    private final TxnCallable<E> dequeue;
+
+    private final QueueMetrics metrics;
+
+    /**
+     * @param queue            the queue whose operations are run
+     * @param stm              the STM the queue lives in
+     * @param contentionPolicy how the transactions deal with conflicts
+     * @param metrics          the contention counters of the queue
+     */
+    TxnOperations(@NotNull TxnQueue<E> queue, @NotNull Stm stm, @NotNull ContentionPolicy contentionPolicy,
+                  @NotNull QueueMetrics metrics) {
+        this.executor = contentionPolicy.configure(stm.newTxnFactoryBuilder()).newTxnExecutor();
+        this.metrics = metrics;
+        this.enqueues = ThreadLocal.withInitial(() -> new Enqueue<>(queue, metrics));
+        this.dequeue = new TxnCallable<E>() {
+            @Override
+            public E call(Txn txn) {
+                recordRetry(txn, metrics);
+                return queue.dequeue(txn);
+            }
+        };
+    }
+
+    /**
+     * @param value the value to enqueue
+     * @return <code>true</code> if the value was enqueued; <code>false</code> if the queue is full
+     */
+    boolean enqueue(E value) {
+        Enqueue<E> enqueue = enqueues.get();
+        enqueue.value = value;
+        try {
+            boolean enqueued = executor.execute(enqueue);
+            if (!enqueued) {
+                metrics.record(QueueMetrics.Event.FULL);
+            }
+            return enqueued;
+        } finally {
+            enqueue.value = null;
+        }
+    }
+
+    /**
+     * @return the removed element; <code>null</code> if the queue is empty
+     */
+    E dequeue() {
+        E value = executor.execute(dequeue);
+        if (value == null) {
+            metrics.record(QueueMetrics.Event.EMPTY);
+        }
+        return value;
+    }
+
+    /**
+     * Counts a transaction that runs again after it was aborted.
+     *
+     * @param txn     the running transaction
+     * @param metrics the counters to count it in
+     */
+    private static void recordRetry(Txn txn, QueueMetrics metrics) {
+        if (txn.getAttempt() > 1) {
+            metrics.record(QueueMetrics.Event.TRANSACTION_RETRY);
+        }
+    }
+
+    /**
+     * The enqueue callable of one thread.
+     *
+     * @param <E> the type of elements held in the queue
+     */
+    private static final class Enqueue<E> implements TxnBooleanCallable {
+
+        private final TxnQueue<E> queue;
+
+        private final QueueMetrics metrics;
+
+        /**
+         * The value the running enqueue enqueues.
+         */
+        E value;
+
+        Enqueue(TxnQueue<E> queue, QueueMetrics metrics) {
+            this.queue = queue;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean call(Txn txn) {
+            recordRetry(txn, metrics);
+            return queue.enqueue(txn, value);
+        }
+    }
+}
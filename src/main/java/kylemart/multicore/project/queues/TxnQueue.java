@@ -0,0 +1,152 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+import org.multiverse.api.StmUtils;
+import org.multiverse.api.Txn;
+import org.multiverse.api.callables.TxnCallable;
+import org.multiverse.api.callables.TxnIntCallable;
+
+/**
+ * A {@link ConcurrentQueue} built on Multiverse software transactional memory, whose operations can be composed with
+ * each other and with other transactional operations.
+ *
+ * <p>
+ * Every operation comes in two forms. The form that takes a {@link Txn} runs as part of that transaction, so that it
+ * commits or aborts together with whatever else the caller does in it. The form without runs in a transaction of its
+ * own, or joins the transaction the calling thread is running, if any. The batch operations {@link #enqueueAll} and
+ * {@link #drainTo} run in a single transaction, which spreads its cost over all of their elements.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ */
+public interface TxnQueue<E> extends ConcurrentQueue<E> {
+
+    /**
+     * Enqueues the {@code value} to the end of the queue as part of a transaction.
+     *
+     * @param txn   the transaction to run in
+     * @param value the value to enqueue
+     * @return <code>true</code> if the value was enqueued; <code>false</code> if the queue is full
+     */
+    boolean enqueue(@NotNull Txn txn, @NotNull E value);
+
+    /**
+     * Removes an element from the front of the queue as part of a transaction.
+     *
+     * @param txn the transaction to run in
+     * @return the removed element; <code>null</code> if the queue is empty
+     */
+    E dequeue(@NotNull Txn txn);
+
+    /**
+     * @param txn the transaction to run in
+     * @return <code>true</code> if an enqueue in this transaction would fail; <code>false</code> otherwise
+     */
+    boolean isFull(@NotNull Txn txn);
+
+    /**
+     * Enqueues values as part of a transaction, as {@link #enqueueAll(Object[], int, int)} does.
+     *
+     * @param txn    the transaction to run in
+     * @param values the values to enqueue
+     * @param offset the index of the first value to enqueue
+     * @param length the number of values to enqueue
+     * @return the number of values enqueued; these are the first values of the given range
+     */
+    default int enqueueAll(@NotNull Txn txn, @NotNull E[] values, int offset, int length) {
+        int enqueued = 0;
+        while (enqueued < length && enqueue(txn, values[offset + enqueued])) {
+            enqueued++;
+        }
+        return enqueued;
+    }
+
+    /**
+     * Removes elements as part of a transaction, as {@link #drainTo(Object[], int)} does.
+     *
+     * @param txn         the transaction to run in
+     * @param destination the array to store the removed elements in
+     * @param max         the maximum number of elements to remove
+     * @return the number of elements removed
+     */
+    default int drainTo(@NotNull Txn txn, @NotNull E[] destination, int max) {
+        int drained = 0;
+        while (drained < max) {
+            E value = dequeue(txn);
+            if (value == null) {
+                break;
+            }
+            destination[drained++] = value;
+        }
+        return drained;
+    }
+
+    /**
+     * Enqueues values in a single transaction.
+     */
+    @Override
+    default int enqueueAll(@NotNull E[] values, int offset, int length) {
+        return StmUtils.atomic(new TxnIntCallable() {
+            @Override
+            public int call(Txn txn) throws Exception {
+                return enqueueAll(txn, values, offset, length);
+            }
+        });
+    }
+
+    /**
+     * Removes elements in a single transaction.
+     */
+    @Override
+    default int drainTo(@NotNull E[] destination, int max) {
+        return StmUtils.atomic(new TxnIntCallable() {
+            @Override
+            public int call(Txn txn) throws Exception {
+                return drainTo(txn, destination, max);
+            }
+        });
+    }
+
+    /**
+     * Atomically moves the element at the front of one queue to the end of another. Nothing is moved if the source
+     * queue is empty or the target queue is full.
+     *
+     * @param from the queue to dequeue from
+     * @param to   the queue to enqueue to
+     * @param <E>  the type of the element moved
+     * @return the element moved; <code>null</code> if none was
+     * @throws IllegalStateException if the target queue refuses the element although it is not full; nothing is moved
+     */
+    static <E> E transfer(@NotNull TxnQueue<E> from, @NotNull TxnQueue<? super E> to) {
+        return StmUtils.atomic(new TxnCallable<E>() {
+            @Override
+            public E call(Txn txn) throws Exception {
+                return transfer(txn, from, to);
+            }
+        });
+    }
+
+    /**
+     * Moves the element at the front of one queue to the end of another as part of a transaction. Nothing is moved if
+     * the source queue is empty or the target queue is full.
+     *
+     * @param txn  the transaction to run in
+     * @param from the queue to dequeue from
+     * @param to   the queue to enqueue to
+     * @param <E>  the type of the element moved
+     * @return the element moved; <code>null</code> if none was
+     * @throws IllegalStateException if the target queue refuses the element although it is not full; the element has
+     *                               already been dequeued in the transaction, so the exception must be let through to
+     *                               abort it
+     */
+    static <E> E transfer(@NotNull Txn txn, @NotNull TxnQueue<E> from, @NotNull TxnQueue<? super E> to) {
+        if (to.isFull(txn)) {
+            return null;
+        }
+        E element = from.dequeue(txn);
+        if (element != null && !to.enqueue(txn, element)) {
+            throw new IllegalStateException("The target queue refused an element although it is not full");
+        }
+        return element;
+    }
+}
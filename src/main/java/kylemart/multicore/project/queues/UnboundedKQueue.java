@@ -0,0 +1,485 @@
+package kylemart.multicore.project.queues;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded, lock-free queue.
+ *
+ * <p>
+ * This is the linked-segment variant of the lock-free k-FIFO Queue. Instead of a fixed ring of segments, the queue is
+ * a linked list of k-segments that grows at the tail whenever the tail segment is full, so enqueue operations never
+ * fail. Elements may be dequeued out-of-order up to k-1, and k enqueue and k dequeue operations can be performed in
+ * parallel.
+ * </p>
+ *
+ * <p>
+ * Nodes that have been drained at the head are returned, together with their segments, to a lock-free free list and
+ * reused when the tail grows again, so a queue whose size stays within the pooled capacity does not allocate. A node
+ * is only reused once no operation can still be working on it: every operation reserves the id of the node it starts
+ * from, nodes are numbered in list order, and a drained node is only reused once every reservation has moved past
+ * its id. A reused node gets a new id, greater than that of any node before it.
+ * </p>
+ *
+ * <p>
+ * Before the head moves past a node, the node is sealed. An insertion into the head node pins the node's version
+ * instead, so that a dequeue that found the node empty before the insertion fails to seal it. An insertion that finds
+ * its node sealed is undone, so no element is left behind in a node that is no longer part of the queue.
+ * </p>
+ *
+ * @param <E> the type of elements held in this queue
+ * @see <a href="https://link.springer.com/chapter/10.1007/978-3-642-39958-9_18">Lock-Free k-FIFO Queues</a>
+ */
+public class UnboundedKQueue<E> implements ConcurrentQueue<E> {
+
+    /**
+     * The default number of free nodes kept for reuse.
+     */
+    private static final int DEFAULT_FREE_SEGMENT_COUNT = 64;
+
+    /**
+     * The number of slots in each segment.
+     */
+    private final int k;
+
+    /**
+     * The maximum number of nodes on the free list.
+     */
+    private final int freeSegmentCount;
+
+    /**
+     * The head node; this is where dequeue operations occur.
+     */
+    private final AtomicReference<Node<E>> head;
+
+    /**
+     * The tail node; this is where enqueue operations occur.
+     */
+    private final AtomicReference<Node<E>> tail;
+
+    /**
+     * The top of the free list of drained nodes, linked through {@link Node#nextFree}.
+     */
+    private final AtomicReference<Node<E>> free = new AtomicReference<>();
+
+    /**
+     * The number of nodes on the free list.
+     */
+    private final AtomicInteger freeCount = new AtomicInteger();
+
+    /**
+     * A node that lost the race to be appended to the list. It was never visible to other threads, so it is kept here
+     * for the next append rather than pushed onto the free list, which only ever takes back nodes that every
+     * operation is done with.
+     */
+    private final AtomicReference<Node<E>> spare = new AtomicReference<>();
+
+    /**
+     * The first drained node that has not been reclaimed yet; the nodes from here up to the head are drained. Guarded
+     * by {@link #reclaiming}.
+     */
+    private Node<E> oldest;
+
+    /**
+     * Held by the thread that reclaims drained nodes; other threads do not wait for it, and allocate if they need a
+     * node in the meantime.
+     */
+    private final AtomicBoolean reclaiming = new AtomicBoolean();
+
+    /**
+     * All reservations ever made, linked through {@link Reservation#next}; one per thread that used the queue.
+     */
+    private final AtomicReference<Reservation> reservations = new AtomicReference<>();
+
+    private final ThreadLocal<Reservation> reservation = ThreadLocal.withInitial(this::register);
+
+    /**
+     * Instantiates a new UnboundedKQueue with a specified k.
+     *
+     * @param k the number of enqueue and dequeue operations that can be performed in parallel
+     */
+    public UnboundedKQueue(int k) {
+        this(k, DEFAULT_FREE_SEGMENT_COUNT);
+    }
+
+    /**
+     * Instantiates a new UnboundedKQueue with a specified k and a bound on the number of drained segments kept for
+     * reuse.
+     *
+     * @param k                the number of enqueue and dequeue operations that can be performed in parallel
+     * @param freeSegmentCount the maximum number of drained segments kept for reuse
+     */
+    public UnboundedKQueue(int k, int freeSegmentCount) {
+        this.k = k;
+        this.freeSegmentCount = freeSegmentCount;
+        Node<E> node = new Node<>(new Segment<>(k));
+        head = new AtomicReference<>(node);
+        tail = new AtomicReference<>(node);
+        oldest = node;
+    }
+
+    /**
+     * Enqueues the {@code element} to the end of the queue. Never fails, as the queue grows as needed.
+     *
+     * @return <code>true</code>
+     */
+    @Override
+    public boolean enqueue(@NotNull E element) {
+        Reservation reservation = this.reservation.get();
+        try {
+            while (true) {
+                Node<E> oldTail = reserve(tail, reservation);
+                Segment<E> oldTailSegment = oldTail.segment;
+
+                int emptySlotIndex = oldTailSegment.getEmptySlotIndex();
+                if (emptySlotIndex >= 0) {
+                    if (oldTailSegment.slots.compareAndSet(emptySlotIndex, null, element)) {
+                        if (committed(oldTail, emptySlotIndex, element)) {
+                            return true;
+                        }
+                    }
+                } else {
+                    advanceTail(oldTail);
+                }
+            }
+        } finally {
+            reservation.release();
+        }
+    }
+
+    @Override
+    public E dequeue() {
+        Reservation reservation = this.reservation.get();
+        try {
+            while (true) {
+                Node<E> oldHead = reserve(head, reservation);
+                // Read before the scan, so that an insertion committed after the scan began keeps the node unsealed.
+                long version = oldHead.version.get();
+                Node<E> oldTail = tail.get();
+                Segment<E> oldHeadSegment = oldHead.segment;
+
+                if (oldHead != head.get()) {
+                    continue;
+                }
+
+                int foundIndex = oldHeadSegment.findFirstElement();
+                if (foundIndex >= 0) {
+                    E found = oldHeadSegment.slots.get(foundIndex);
+                    if (oldHead == oldTail) {
+                        advanceTail(oldTail);
+                    }
+                    if (found != null && oldHeadSegment.slots.compareAndSet(foundIndex, found, null)) {
+                        return found;
+                    }
+                } else {
+                    if (oldHead == oldTail && oldTail == tail.get()) {
+                        return null;
+                    }
+                    advanceHead(oldHead, version);
+                }
+            }
+        } finally {
+            reservation.release();
+        }
+    }
+
+    /**
+     * Reads the head or the tail node and reserves its id, so that neither it nor any node after it is reused until
+     * the reservation is released.
+     *
+     * @param end         the head or the tail
+     * @param reservation the reservation of the current thread
+     * @return the node, which was still the head or the tail after it was reserved
+     */
+    private Node<E> reserve(AtomicReference<Node<E>> end, Reservation reservation) {
+        while (true) {
+            Node<E> node = end.get();
+            long id = node.id;
+            reservation.id.set(id);
+            // Checking the id too tells a node that was reused, and came back around, from the node that was read.
+            if (end.get() == node && node.id == id) {
+                return node;
+            }
+        }
+    }
+
+    /**
+     * Validates an insertion. An insertion is valid if the inserted item already got dequeued at validation time by a
+     * concurrent operation or it is in the desired range. Tries to undo the insertion if something went wrong.
+     *
+     * @param oldTail         the old tail node
+     * @param slotIndex       the index where the expected element should lie
+     * @param expectedElement the expected element
+     * @return true if successful; false otherwise
+     */
+    private boolean committed(Node<E> oldTail, int slotIndex, E expectedElement) {
+        Segment<E> oldTailSegment = oldTail.segment;
+        if (oldTailSegment.slots.get(slotIndex) != expectedElement) {
+            return true;
+        }
+
+        // A node that the head has not reached yet has not been scanned by a dequeue, so none can seal it before
+        // finding the element. The head may have been reused since it was read, but then its id is greater than that
+        // of the old tail, as a reused node always gets a greater id than any node in the list.
+        if (head.get().id < oldTail.id) {
+            return true;
+        }
+        return oldTail.pin() || !oldTailSegment.slots.compareAndSet(slotIndex, expectedElement, null);
+    }
+
+    /**
+     * Advances the tail to the next node, appending a new node first if the tail is the last node in the list.
+     *
+     * @param oldTail the old tail node
+     */
+    private void advanceTail(Node<E> oldTail) {
+        if (oldTail != tail.get()) {
+            return;
+        }
+
+        Node<E> next = oldTail.next.get();
+        if (next == null) {
+            Node<E> node = acquireNode(oldTail.id + 1);
+            if (oldTail.next.compareAndSet(null, node)) {
+                next = node;
+            } else {
+                spare.set(node);
+                next = oldTail.next.get();
+            }
+        }
+        tail.compareAndSet(oldTail, next);
+    }
+
+    /**
+     * Advances the head to the next node, moving the tail along first if both point to the same node. The old head is
+     * sealed first, which fails if an insertion was committed to it since the dequeue read its {@code version}.
+     *
+     * @param oldHead the old head node
+     * @param version the version of the old head, read before it was found empty
+     */
+    private void advanceHead(Node<E> oldHead, long version) {
+        if (oldHead != head.get()) {
+            return;
+        }
+
+        Node<E> next = oldHead.next.get();
+        if (next == null) {
+            return;
+        }
+        Node<E> oldTail = tail.get();
+        if (oldHead == oldTail) {
+            tail.compareAndSet(oldTail, next);
+        }
+
+        if (oldHead.seal(version)) {
+            head.compareAndSet(oldHead, next);
+        }
+    }
+
+    /**
+     * @param id the id of the node to append
+     * @return a drained node from the free list, or a newly allocated node if there is none
+     */
+    private Node<E> acquireNode(long id) {
+        Node<E> node = spare.get() != null ? spare.getAndSet(null) : null;
+        if (node == null) {
+            node = pop();
+        }
+        if (node == null && reclaim()) {
+            node = pop();
+        }
+        if (node == null) {
+            node = new Node<>(new Segment<>(k));
+        }
+        node.reset(id);
+        return node;
+    }
+
+    /**
+     * Pushes the drained nodes that no reservation covers any more onto the free list, or leaves them to the garbage
+     * collector once the free list is full. Does nothing if another thread is already at it.
+     *
+     * @return true if any node was reclaimed; false otherwise
+     */
+    private boolean reclaim() {
+        if (!reclaiming.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            Node<E> currentHead = head.get();
+            long minimum = Long.MAX_VALUE;
+            for (Reservation current = reservations.get(); current != null; current = current.next) {
+                minimum = Math.min(minimum, current.id.get());
+            }
+
+            boolean reclaimed = false;
+            while (oldest != currentHead && oldest.id < minimum) {
+                Node<E> node = oldest;
+                oldest = node.next.get();
+                if (freeCount.get() < freeSegmentCount) {
+                    push(node);
+                    reclaimed = true;
+                }
+            }
+            return reclaimed;
+        } finally {
+            reclaiming.set(false);
+        }
+    }
+
+    /**
+     * Pushes a node onto the free list. Only called by the thread that reclaims nodes.
+     *
+     * @param node the drained node
+     */
+    private void push(Node<E> node) {
+        Node<E> top;
+        do {
+            top = free.get();
+            node.nextFree = top;
+        } while (!free.compareAndSet(top, node));
+        freeCount.incrementAndGet();
+    }
+
+    /**
+     * Pops a node off the free list. The usual ABA problem of a popped node that is pushed back while another thread
+     * is about to pop it cannot occur: the node would have to be appended and drained again, and would then get an id
+     * greater than the reservation of the other thread, which keeps it from being pushed.
+     *
+     * @return a drained node; otherwise <code>null</code> if the free list is empty
+     */
+    private Node<E> pop() {
+        Node<E> top;
+        do {
+            top = free.get();
+            if (top == null) {
+                return null;
+            }
+        } while (!free.compareAndSet(top, top.nextFree));
+        freeCount.decrementAndGet();
+        top.nextFree = null;
+        return top;
+    }
+
+    /**
+     * @return a new reservation of the current thread, added to the reservations of this queue
+     */
+    private Reservation register() {
+        Reservation registered = new Reservation();
+        Reservation top;
+        do {
+            top = reservations.get();
+            registered.next = top;
+        } while (!reservations.compareAndSet(top, registered));
+        return registered;
+    }
+
+    /**
+     * The id of the first node that a thread may be working on; {@link Long#MAX_VALUE} while it is not in an
+     * operation. Every reservation is written by its own thread only.
+     */
+    private static final class Reservation {
+
+        final AtomicLong id = new AtomicLong(Long.MAX_VALUE);
+
+        /**
+         * The reservation registered before this one; set before this one is published.
+         */
+        Reservation next;
+
+        void release() {
+            id.lazySet(Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * A link in the list of segments.
+     *
+     * @param <E> the type of elements held in this node's segment
+     */
+    private static class Node<E> {
+
+        /**
+         * The version of a sealed node.
+         */
+        static final long SEALED = -1;
+
+        /**
+         * The position of this node in the list; every node has a greater id than the node before it. Changes when
+         * the node is reused, which a thread that read the node before can tell by reading it again.
+         */
+        volatile long id;
+
+        /**
+         * The segment holding this node's elements.
+         */
+        final Segment<E> segment;
+
+        /**
+         * The next node in the list; <code>null</code> if this is the last node.
+         */
+        final AtomicReference<Node<E>> next = new AtomicReference<>();
+
+        /**
+         * Bumped by every insertion committed while this node is the head; {@link #SEALED} once the head moves past
+         * it.
+         */
+        final AtomicLong version = new AtomicLong();
+
+        /**
+         * The next node on the free list.
+         */
+        Node<E> nextFree;
+
+        /**
+         * Instantiates a new node.
+         *
+         * @param segment the segment holding this node's elements
+         */
+        Node(Segment<E> segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Prepares the node to be appended. Its segment is empty, as every insertion into it either was dequeued or
+         * undid itself before its reservation was released.
+         *
+         * @param id the position of this node in the list
+         */
+        void reset(long id) {
+            this.id = id;
+            next.set(null);
+            version.set(0);
+        }
+
+        /**
+         * Keeps the node from being sealed by a dequeue that found it empty before an insertion.
+         *
+         * @return true if the node is not sealed; false otherwise
+         */
+        boolean pin() {
+            long current;
+            while ((current = version.get()) != SEALED) {
+                if (version.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Seals the node, unless an insertion was committed to it since the {@code expectedVersion} was read.
+         *
+         * @param expectedVersion the version read before the node was found empty
+         * @return true if the node is sealed; false otherwise
+         */
+        boolean seal(long expectedVersion) {
+            return expectedVersion == SEALED || version.compareAndSet(expectedVersion, SEALED)
+                    || version.get() == SEALED;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package kylemart.multicore.project.queues;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread of a {@link BlockingConcurrentQueue} waits for the wrapped queue to become non-empty or non-full.
+ * The strategies trade the latency with which a waiting thread notices a change against the CPU time it burns while
+ * waiting.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Retries in a tight loop. Lowest latency, but a waiting thread keeps a core busy.
+     */
+    BUSY_SPIN(false) {
+        @Override
+        void idle(Object blocker, int attempt, long remainingNanos) {
+            Thread.onSpinWait();
+        }
+    },
+
+    /**
+     * Spins for a while, then yields the processor between retries. Other threads can run, but a waiting thread is
+     * still never descheduled for long.
+     */
+    SPIN_THEN_YIELD(false) {
+        @Override
+        void idle(Object blocker, int attempt, long remainingNanos) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+
+    /**
+     * Spins for a while, yields for a while, and then parks for a short, fixed time between retries. An idle thread
+     * uses next to no CPU time, at the cost of noticing a change up to {@link #PARK_NANOS} late.
+     */
+    SPIN_THEN_PARK(false) {
+        @Override
+        void idle(Object blocker, int attempt, long remainingNanos) {
+            if (attempt < SPIN_ATTEMPTS) {
+                Thread.onSpinWait();
+            } else if (attempt < SPIN_ATTEMPTS + YIELD_ATTEMPTS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(blocker, Math.min(remainingNanos, PARK_NANOS));
+            }
+        }
+    },
+
+    /**
+     * Parks until the thread on the other side signals that it enqueued or dequeued an element. An idle thread uses
+     * no CPU time at all. In exchange, every operation checks whether a thread is waiting on it, and waking a thread
+     * up takes a system call.
+     */
+    PARK(true) {
+        @Override
+        void idle(Object blocker, int attempt, long remainingNanos) {
+            LockSupport.parkNanos(blocker, remainingNanos);
+        }
+    };
+
+    /**
+     * The number of retries a spinning strategy makes before it backs off further.
+     */
+    static final int SPIN_ATTEMPTS = 100;
+
+    /**
+     * The number of retries {@link #SPIN_THEN_PARK} makes while yielding before it starts to park.
+     */
+    static final int YIELD_ATTEMPTS = 100;
+
+    /**
+     * How long {@link #SPIN_THEN_PARK} parks between retries.
+     */
+    static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * Whether a waiting thread relies on being signalled.
+     */
+    final boolean signalled;
+
+    WaitStrategy(boolean signalled) {
+        this.signalled = signalled;
+    }
+
+    /**
+     * Waits once between two retries of a failed operation.
+     *
+     * @param blocker        the object the thread is waiting on, for thread dumps
+     * @param attempt        the number of retries that failed so far
+     * @param remainingNanos the maximum time to wait; positive
+     */
+    abstract void idle(Object blocker, int attempt, long remainingNanos);
+}
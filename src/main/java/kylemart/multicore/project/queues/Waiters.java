@@ -0,0 +1,79 @@
+package kylemart.multicore.project.queues;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The threads waiting for one condition of a {@link BlockingConcurrentQueue}, e.g. for the queue to become non-empty.
+ *
+ * <p>
+ * Only a {@link WaitStrategy#signalled signalled} strategy keeps track of its threads. A waiting thread registers
+ * itself before it retries its operation for the last time, and a thread that changed the queue signals after its
+ * operation took effect, so either the retry sees the change or the signal sees the waiting thread.
+ * </p>
+ */
+final class Waiters {
+
+    private final WaitStrategy strategy;
+
+    /**
+     * The number of registered threads; read on every signal, so that nobody is woken up while nobody waits.
+     */
+    private final AtomicInteger count = new AtomicInteger();
+
+    /**
+     * The registered threads.
+     */
+    private final ConcurrentLinkedQueue<Thread> threads = new ConcurrentLinkedQueue<>();
+
+    Waiters(WaitStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * Registers the calling thread as waiting; a no-op unless the strategy relies on signals.
+     */
+    void register() {
+        if (strategy.signalled) {
+            threads.add(Thread.currentThread());
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes the calling thread again; must be called once for every call to {@link #register()}.
+     */
+    void deregister() {
+        if (strategy.signalled) {
+            count.decrementAndGet();
+            threads.remove(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Waits once between two retries of a failed operation.
+     *
+     * @param attempt        the number of retries that failed so far
+     * @param remainingNanos the maximum time to wait; positive
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    void await(int attempt, long remainingNanos) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        strategy.idle(this, attempt, remainingNanos);
+    }
+
+    /**
+     * Wakes up every registered thread. All of them are woken rather than one, as a thread that was picked might
+     * time out or lose its retry to a thread that never waited.
+     */
+    void signal() {
+        if (strategy.signalled && count.get() > 0) {
+            for (Thread thread : threads) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+}